@@ -0,0 +1,62 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Files shared by the benchmarks: a stand-in for the pre-commit archive with random content and a fake Python
+ * interpreter, so that no benchmark needs the network or a Python installation.
+ */
+final class BenchmarkFiles {
+    static final String VERSION = "v3.4.0";
+
+    private BenchmarkFiles() {
+    }
+
+    static File createTempDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory("pre-commit-benchmark-" + prefix).toFile();
+    }
+
+    static void delete(File file) {
+        FileUtils.deleteQuietly(file);
+    }
+
+    /**
+     * Writes {@code size} random bytes, the same bytes for the same seed.
+     */
+    static File writeArchive(File file, int size, long seed) throws IOException {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    /**
+     * Writes a script that behaves like {@code python pre-commit.pyz run}: it prints {@code lines} lines, a tenth of
+     * them to standard error, and exits with 0.
+     */
+    static File writeFakePython(File directory, int lines) throws IOException {
+        File script = new File(directory, "python");
+        String content = "#!/bin/sh\n"
+                + "i=0\n"
+                + "while [ $i -lt " + lines + " ]; do\n"
+                + "  if [ $((i % 10)) -eq 0 ]; then\n"
+                + "    echo \"[WARNING] hook $i emitted a warning\" >&2\n"
+                + "  else\n"
+                + "    echo \"hook $i.......................................................................Passed\"\n"
+                + "  fi\n"
+                + "  i=$((i + 1))\n"
+                + "done\n";
+        Files.write(script.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        if (!script.setExecutable(true)) {
+            throw new IOException("Could not make " + script + " executable");
+        }
+        return script;
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.internal.impl.SimpleLocalRepositoryManagerFactory;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.NoLocalRepositoryManagerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the archive location in the cache. Cold resolutions start without a cache directory and with a new
+ * repository session, as the first build on a machine does. Warm resolutions reuse both.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheResolverBenchmark {
+    private static final CacheDescriptor DESCRIPTOR = new CacheDescriptor("pre-commit", BenchmarkFiles.VERSION, "pyz");
+
+    @Param({"cold", "warm"})
+    public String cache;
+
+    private File root;
+    private DirectoryCacheResolver directoryCacheResolver;
+    private RepositoryCacheResolver repositoryCacheResolver;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException, NoLocalRepositoryManagerException {
+        root = BenchmarkFiles.createTempDirectory("resolve");
+        directoryCacheResolver = new DirectoryCacheResolver(new File(root, "cache"));
+        repositoryCacheResolver = newRepositoryCacheResolver();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws NoLocalRepositoryManagerException {
+        if ("cold".equals(cache)) {
+            BenchmarkFiles.delete(new File(root, "cache"));
+            directoryCacheResolver = new DirectoryCacheResolver(new File(root, "cache"));
+            repositoryCacheResolver = newRepositoryCacheResolver();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    public File directoryCacheResolver() {
+        return directoryCacheResolver.resolve(DESCRIPTOR);
+    }
+
+    @Benchmark
+    public File repositoryCacheResolver() {
+        return repositoryCacheResolver.resolve(DESCRIPTOR);
+    }
+
+    private RepositoryCacheResolver newRepositoryCacheResolver() throws NoLocalRepositoryManagerException {
+        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        session.setLocalRepositoryManager(new SimpleLocalRepositoryManagerFactory()
+                .newInstance(session, new LocalRepository(new File(root, "repository"))));
+        return new RepositoryCacheResolver(session);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cached archive with the copy in the install directory, which are equal as on every warm build.
+ * Guava's {@code Files.equal}, used before the digest memo, is compared with Commons IO and the digest memo. Cold
+ * comparisons start with an empty digest memo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareBenchmark {
+
+    @Param({"cold", "warm"})
+    public String cache;
+
+    @Param({"1048576", "8388608"})
+    public int size;
+
+    private File root;
+    private File archive;
+    private File copy;
+    private File memo;
+    private DigestCache digestCache;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        root = BenchmarkFiles.createTempDirectory("compare");
+        archive = BenchmarkFiles.writeArchive(new File(root, "cache/pre-commit.pyz"), size, 1);
+        copy = BenchmarkFiles.writeArchive(new File(root, "install/pre-commit.pyz"), size, 1);
+        memo = new File(root, DigestCache.FILE_NAME);
+        digestCache = new DigestCache(memo);
+        digestCache.equal(archive, copy);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        if ("cold".equals(cache)) {
+            memo.delete();
+            digestCache = new DigestCache(memo);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    public boolean guavaFilesEqual() throws IOException {
+        return Files.equal(archive, copy);
+    }
+
+    @Benchmark
+    public boolean commonsContentEquals() throws IOException {
+        return FileUtils.contentEquals(archive, copy);
+    }
+
+    @Benchmark
+    public boolean digestCacheEqual() throws IOException {
+        return digestCache.equal(archive, copy);
+    }
+}
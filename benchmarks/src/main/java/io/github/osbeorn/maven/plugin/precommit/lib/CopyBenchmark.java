@@ -0,0 +1,77 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places the cached archive into the install directory, by copying it or by linking it from the artifact store.
+ * Cold placements start without an install directory, warm placements replace the archive placed before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CopyBenchmark {
+
+    @Param({"cold", "warm"})
+    public String cache;
+
+    @Param({"1048576", "8388608"})
+    public int size;
+
+    private File root;
+    private File archive;
+    private File installDirectory;
+    private ArtifactStore store;
+    private File stored;
+    private DefaultFileCopier fileCopier;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        root = BenchmarkFiles.createTempDirectory("copy");
+        archive = BenchmarkFiles.writeArchive(new File(root, "cache/pre-commit.pyz"), size, 1);
+        installDirectory = new File(root, "install");
+        store = new ArtifactStore(new File(root, "store"));
+        stored = store.add(archive, Checksums.sha256(archive));
+        fileCopier = new DefaultFileCopier();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        if ("cold".equals(cache)) {
+            BenchmarkFiles.delete(installDirectory);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    public void defaultFileCopier() throws FileCopyException {
+        fileCopier.copy(archive.getPath(), installDirectory.getPath());
+    }
+
+    @Benchmark
+    public void artifactStoreHardlink() throws IOException {
+        store.materialize(stored, new File(installDirectory, archive.getName()), Materialization.HARDLINK);
+    }
+}
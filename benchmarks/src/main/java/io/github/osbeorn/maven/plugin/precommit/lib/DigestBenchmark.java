@@ -0,0 +1,75 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the SHA-256 digest of the archive. Cold digests start with an empty digest memo, as after a fresh
+ * checkout, warm digests find the archive in the memo.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark {
+
+    @Param({"cold", "warm"})
+    public String cache;
+
+    @Param({"1048576", "8388608"})
+    public int size;
+
+    private File root;
+    private File archive;
+    private File memo;
+    private DigestCache digestCache;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        root = BenchmarkFiles.createTempDirectory("digest");
+        archive = BenchmarkFiles.writeArchive(new File(root, "pre-commit.pyz"), size, 1);
+        memo = new File(root, DigestCache.FILE_NAME);
+        digestCache = new DigestCache(memo);
+        digestCache.sha256(archive);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        if ("cold".equals(cache)) {
+            memo.delete();
+            digestCache = new DigestCache(memo);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    public String checksums() throws IOException {
+        return Checksums.sha256(archive);
+    }
+
+    @Benchmark
+    public String digestCache() throws IOException {
+        return digestCache.sha256(archive);
+    }
+}
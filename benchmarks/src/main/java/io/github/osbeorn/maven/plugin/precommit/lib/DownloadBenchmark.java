@@ -0,0 +1,101 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the archive into the cache from a local HTTP server standing in for the GitHub releases. Cold fetches
+ * download the archive and its published checksum, warm fetches find the archive in the cache and verify it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DownloadBenchmark {
+
+    @Param({"cold", "warm"})
+    public String cache;
+
+    @Param({"1048576", "8388608"})
+    public int size;
+
+    private File root;
+    private File cacheDirectory;
+    private HttpServer server;
+    private BinaryInstaller installer;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException, InstallationException {
+        root = BenchmarkFiles.createTempDirectory("download");
+        String fileName = BinaryInstaller.getSetupFileName(BenchmarkFiles.VERSION);
+        byte[] archive = Files.readAllBytes(
+                BenchmarkFiles.writeArchive(new File(root, "server/" + fileName), size, 1).toPath());
+        byte[] checksum = (Checksums.toHex(Checksums.newSha256().digest(archive)) + "  " + fileName + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/" + BenchmarkFiles.VERSION + "/" + fileName, exchange -> respond(exchange, archive));
+        server.createContext("/" + BenchmarkFiles.VERSION + "/" + fileName + ".sha256sum",
+                exchange -> respond(exchange, checksum));
+        server.start();
+
+        cacheDirectory = new File(root, "cache");
+        File installDirectory = new File(root, "install");
+        InstallConfig config = new DefaultInstallConfig(installDirectory, root,
+                new DirectoryCacheResolver(cacheDirectory), false, InstallMode.ARCHIVE);
+        installer = new BinaryInstaller(config, new DefaultFileCopier(), new DefaultFileDownloader(), null,
+                new DigestCache(new File(installDirectory, DigestCache.FILE_NAME)), new Timings())
+                .setVersion(BenchmarkFiles.VERSION)
+                .setDownloadRoot("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        installer.prefetch();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        if ("cold".equals(cache)) {
+            BenchmarkFiles.delete(cacheDirectory);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        server.stop(0);
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    public File prefetch() throws InstallationException {
+        return installer.prefetch();
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.ProcessRunner.ProcessResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spawns a fake Python interpreter and drains its output like every pre-commit process the plugin runs. The cold
+ * benchmark measures the first process of a fresh JVM, before the threads draining the output exist, the warm
+ * benchmark measures processes spawned after many others.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProcessBenchmark {
+
+    @Param({"10", "10000"})
+    public int lines;
+
+    private File root;
+    private File python;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        root = BenchmarkFiles.createTempDirectory("process");
+        python = BenchmarkFiles.writeFakePython(root, lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public ProcessResult cold() throws IOException, InterruptedException {
+        return run();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public ProcessResult warm() throws IOException, InterruptedException {
+        return run();
+    }
+
+    private ProcessResult run() throws IOException, InterruptedException {
+        ProcessResult result = ProcessRunner.run(new ProcessBuilder(python.getPath()));
+        if (result.getExitCode() != 0) {
+            throw new IllegalStateException(python + " exited with " + result.getExitCode());
+        }
+        return result;
+    }
+}
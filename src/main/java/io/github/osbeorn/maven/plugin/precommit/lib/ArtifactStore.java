@@ -0,0 +1,146 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed store of artifacts, keyed by their SHA-256 digest and shared by all projects. Projects get
+ * links to (or copies of) the stored files instead of their own copies.
+ */
+final class ArtifactStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactStore.class);
+    private static final String ALGORITHM_DIRECTORY = "sha256";
+    private static final long REFLINK_TIMEOUT_SECONDS = 30;
+
+    private final File root;
+    private final DigestCache digestCache;
+
+    ArtifactStore(File root, DigestCache digestCache) {
+        this.root = root;
+        this.digestCache = digestCache;
+    }
+
+    File getFile(String sha256) {
+        return new File(new File(new File(root, ALGORITHM_DIRECTORY), sha256.substring(0, 2)), sha256);
+    }
+
+    /**
+     * Adds {@code source} to the store unless content with the same digest is already stored, and returns the
+     * stored file. The source is hard linked into the store if possible and copied otherwise, so it must not be
+     * modified in place afterwards. Permissions are left alone, as a hard link shares them with the source and
+     * with every project the stored file is linked into. A stored file whose digest no longer matches, for example
+     * because a linked copy was modified in place, is replaced.
+     */
+    File add(File source, String sha256) throws IOException {
+        File stored = getFile(sha256);
+        if (stored.isFile()) {
+            if (digestCache.sha256(stored).equals(sha256)) {
+                return stored;
+            }
+            LOGGER.warn("The stored file {} was modified, replacing it.", stored);
+        }
+
+        File directory = stored.getParentFile();
+        directory.mkdirs();
+
+        Path temporary = directory.toPath().resolve(sha256 + "." + UUID.randomUUID() + ".tmp");
+        try {
+            if (!link(source.toPath(), temporary, Materialization.HARDLINK)) {
+                Files.copy(source.toPath(), temporary);
+            }
+            Files.move(temporary, stored.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        LOGGER.debug("Added {} to the artifact store as {}.", source, stored);
+        return stored;
+    }
+
+    /**
+     * Returns whether {@code target} is a link to {@code stored}.
+     */
+    boolean isLinked(File stored, File target) {
+        try {
+            return target.exists() && Files.isSameFile(stored.toPath(), target.toPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Makes {@code stored} available as {@code target}, replacing it atomically. Strategies that are not supported
+     * for the given files fall back to a copy.
+     */
+    void materialize(File stored, File target, Materialization materialization) throws IOException {
+        target.getParentFile().mkdirs();
+        Path temporary = target.toPath().resolveSibling(target.getName() + ".tmp");
+        Files.deleteIfExists(temporary);
+
+        try {
+            if (!link(stored.toPath(), temporary, materialization)) {
+                Files.copy(stored.toPath(), temporary);
+            }
+            Files.move(temporary, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private boolean link(Path stored, Path target, Materialization materialization) {
+        try {
+            switch (materialization) {
+                case HARDLINK:
+                    Files.createLink(target, stored);
+                    return true;
+                case SYMLINK:
+                    Files.createSymbolicLink(target, stored.toAbsolutePath());
+                    return true;
+                case REFLINK:
+                    return reflink(stored, target);
+                default:
+                    return false;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.debug("Could not {} {} to {}, falling back to a copy.", materialization, stored, target, e);
+            return false;
+        }
+    }
+
+    /**
+     * Clones a file with {@code cp}, as the JDK offers no access to {@code FICLONE} or {@code clonefile}.
+     */
+    private boolean reflink(Path stored, Path target) throws IOException {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        String[] command;
+        if (os.contains("linux")) {
+            command = new String[]{"cp", "--reflink=always", stored.toString(), target.toString()};
+        } else if (os.contains("mac")) {
+            command = new String[]{"cp", "-c", stored.toString(), target.toString()};
+        } else {
+            return false;
+        }
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try {
+            if (process.waitFor(REFLINK_TIMEOUT_SECONDS, TimeUnit.SECONDS) && process.exitValue() == 0) {
+                return true;
+            }
+            process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        Files.deleteIfExists(target);
+        LOGGER.debug("Reflinks are not supported for {}, falling back to a copy.", target);
+        return false;
+    }
+}
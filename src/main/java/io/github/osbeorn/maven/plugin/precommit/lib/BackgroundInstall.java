@@ -0,0 +1,91 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hook environments pre-commit installs in a background process while the build continues. The build joins
+ * the process before it ends, which reports its failure and completes the installation.
+ */
+public final class BackgroundInstall {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundInstall.class);
+    private static final int LOG_TAIL_LINES = 20;
+
+    private final Process process;
+    private final File logFile;
+    private final Completion completion;
+    private final long start = System.nanoTime();
+    private boolean joined;
+    private InstallationException failure;
+
+    BackgroundInstall(Process process, File logFile, Completion completion) {
+        this.process = process;
+        this.logFile = logFile;
+        this.completion = completion;
+    }
+
+    public File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Waits for the hook environments and completes the installation. Throws if installing them failed, also on
+     * every later call.
+     */
+    public synchronized void join() throws InstallationException {
+        if (!joined) {
+            if (process.isAlive()) {
+                LOGGER.info("Waiting for the pre-commit hook environments being installed in the background.");
+            }
+            try {
+                int exitCode = process.waitFor();
+                joined = true;
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                if (exitCode == 0) {
+                    LOGGER.info("Installed the pre-commit hook environments in the background in {} ms.", millis);
+                    completion.succeeded();
+                } else {
+                    logTail();
+                    completion.failed();
+                    failure = new InstallationException("Installing the pre-commit hook environments failed with "
+                            + "return code " + exitCode + ", see " + logFile);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InstallationException("Unexpected interruption while waiting for the hook environments", e);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void logTail() {
+        try {
+            List<String> lines = Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8);
+            for (String line : lines.subList(Math.max(0, lines.size() - LOG_TAIL_LINES), lines.size())) {
+                LOGGER.error(line);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read {}.", logFile, e);
+        }
+    }
+
+    /**
+     * Completes the installation once the background process exited.
+     */
+    interface Completion {
+        void succeeded();
+
+        void failed();
+    }
+}
@@ -1,33 +1,67 @@
 package io.github.osbeorn.maven.plugin.precommit.lib;
 
-import com.google.common.hash.Hashing;
-import com.google.common.io.Files;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class BinaryInstaller {
     public static final String INSTALL_PATH = "/pre-commit";
     public static final String DEFAULT_DOWNLOAD_ROOT = "https://github.com/pre-commit/pre-commit/releases/download/";
+    public static final String CONFIG_FILE_NAME = ".pre-commit-config.yaml";
+    static final String ARCHIVE_EXTENSION = "pyz";
+    static final String ENVIRONMENTS_LOG_FILE_NAME = "hook-environments.log";
+    static final String ENVIRONMENTS_PENDING_FILE_NAME = "hook-environments.pending";
     private final Logger logger;
     private final InstallConfig config;
     private final FileCopier fileCopier;
     private final FileDownloader fileDownloader;
     private final PythonHandle pythonHandle;
-    private String version, downloadRoot;
+    private final DigestCache digestCache;
+    private final Timings timings;
+    private final MirrorSelector mirrorSelector;
+    private String version;
+    private List<String> downloadRoots = Collections.singletonList(DEFAULT_DOWNLOAD_ROOT);
+    private List<String> orderedDownloadRoots;
     private String[] hookTypes;
+    private boolean force;
+    private String expectedSha256;
+    private File storeDirectory;
+    private Materialization materialization = Materialization.HARDLINK;
+    private boolean cacheHookEnvironments;
+    private File timingsFile;
+    private long maxCacheSize;
+    private int maxCachedVersions;
+    private boolean backgroundEnvironments;
+    private boolean detachEnvironments;
+    private BackgroundInstall backgroundInstall;
+    private final List<CacheLock> uses = new ArrayList<>();
 
     public BinaryInstaller(InstallConfig config, FileCopier fileCopier, FileDownloader fileDownloader, PythonHandle pythonHandle) {
+        this(config, fileCopier, fileDownloader, pythonHandle,
+                new DigestCache(new File(config.getInstallDirectory(), DigestCache.FILE_NAME)), new Timings());
+    }
+
+    BinaryInstaller(InstallConfig config, FileCopier fileCopier, FileDownloader fileDownloader,
+                    PythonHandle pythonHandle, DigestCache digestCache, Timings timings) {
         logger = LoggerFactory.getLogger(getClass());
         this.config = config;
         this.fileCopier = fileCopier;
         this.fileDownloader = fileDownloader;
         this.pythonHandle = pythonHandle;
+        this.digestCache = digestCache;
+        this.timings = timings;
+
+        File indexFile = config.getCacheResolver().getIndexFile();
+        File statisticsDirectory = indexFile != null ? indexFile.getParentFile() : config.getInstallDirectory();
+        this.mirrorSelector = new MirrorSelector(new File(statisticsDirectory, MirrorSelector.FILE_NAME), fileDownloader);
     }
 
     public BinaryInstaller setVersion(String version) {
@@ -36,7 +70,18 @@ public class BinaryInstaller {
     }
 
     public BinaryInstaller setDownloadRoot(String downloadRoot) {
-        this.downloadRoot = downloadRoot;
+        this.downloadRoots = Collections.singletonList(downloadRoot);
+        return this;
+    }
+
+    /**
+     * The download roots to use instead of the single download root. The fastest root that is reachable is used,
+     * and if a download fails, it continues from the next one.
+     */
+    public BinaryInstaller setDownloadRoots(String[] downloadRoots) {
+        if (downloadRoots != null && downloadRoots.length > 0) {
+            this.downloadRoots = Arrays.asList(downloadRoots);
+        }
         return this;
     }
 
@@ -45,30 +90,209 @@ public class BinaryInstaller {
         return this;
     }
 
+    public BinaryInstaller setForce(boolean force) {
+        this.force = force;
+        return this;
+    }
+
+    public BinaryInstaller setExpectedSha256(String expectedSha256) {
+        this.expectedSha256 = expectedSha256;
+        return this;
+    }
+
+    public BinaryInstaller setStoreDirectory(File storeDirectory) {
+        this.storeDirectory = storeDirectory;
+        return this;
+    }
+
+    public BinaryInstaller setMaterialization(Materialization materialization) {
+        this.materialization = materialization;
+        return this;
+    }
+
+    public BinaryInstaller setCacheHookEnvironments(boolean cacheHookEnvironments) {
+        this.cacheHookEnvironments = cacheHookEnvironments;
+        return this;
+    }
+
+    /**
+     * Writes the durations of the installation phases to {@code timingsFile} as JSON.
+     */
+    public BinaryInstaller setTimingsFile(File timingsFile) {
+        this.timingsFile = timingsFile;
+        return this;
+    }
+
+    /**
+     * Maximum number of bytes kept in the cache and in the install directory, or 0 for no limit.
+     */
+    public BinaryInstaller setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of pre-commit versions kept in the cache and in the install directory, or 0 for no limit.
+     */
+    public BinaryInstaller setMaxCachedVersions(int maxCachedVersions) {
+        this.maxCachedVersions = maxCachedVersions;
+        return this;
+    }
+
+    /**
+     * Installs the hook environments in a background process after the Git hooks are installed, instead of waiting
+     * for them. The installation is completed by joining {@link #getBackgroundInstall()}.
+     */
+    public BinaryInstaller setBackgroundEnvironments(boolean backgroundEnvironments) {
+        this.backgroundEnvironments = backgroundEnvironments;
+        return this;
+    }
+
+    /**
+     * Leaves the background process installing the hook environments running on its own, instead of completing the
+     * installation when it is joined. The process marks the installation as complete itself once it succeeds, and
+     * the next build snapshots the hook environments if that is enabled.
+     */
+    public BinaryInstaller setDetachEnvironments(boolean detachEnvironments) {
+        this.detachEnvironments = detachEnvironments;
+        return this;
+    }
+
+    /**
+     * Returns the hook environments the last installation left installing in the background, or {@code null} if
+     * there are none or they were detached.
+     */
+    public BackgroundInstall getBackgroundInstall() {
+        return backgroundInstall;
+    }
+
+    /**
+     * Returns the locks that keep the installed version from being evicted by concurrent builds. The caller
+     * releases them once the build no longer uses the version, they are released already if the installation fails.
+     */
+    public List<CacheLock> getUses() {
+        return uses;
+    }
+
     public void install() throws InstallationException {
         try {
-            logger.info("Installing pre-commit version {}.", version);
+            doInstall();
+        } catch (InstallationException | RuntimeException e) {
+            CacheLock.releaseAll(uses);
+            uses.clear();
+            throw e;
+        } finally {
+            logger.info("pre-commit install took {}.", timings.summary());
+            if (timingsFile != null) {
+                try {
+                    timings.write(timingsFile);
+                } catch (IOException e) {
+                    logger.warn("Could not write the timings to {}.", timingsFile, e);
+                }
+            }
+        }
+    }
 
-            String downloadUrl = downloadRoot + version + "/";
-            String extension = "pyz";
-            String setupFileName = String.format("pre-commit-%s.%s", version.replace("v", ""), extension);
-            downloadUrl += setupFileName;
+    private void doInstall() throws InstallationException {
+        try {
+            String extension = ARCHIVE_EXTENSION;
+            String setupFileName = getSetupFileName(version);
+
+            File installDirectory = getInstallDirectory();
+            File setupFile = new File(installDirectory, setupFileName);
+            File stateFile = new File(config.getInstallDirectory(), InstallState.FILE_NAME);
+            File shimFile = new File(config.getInstallDirectory(), HookShim.FILE_NAME);
+            File pendingFile = new File(config.getInstallDirectory(), ENVIRONMENTS_PENDING_FILE_NAME);
 
             CacheDescriptor cacheDescriptor = new CacheDescriptor("pre-commit", version, extension);
+            List<File> versionFiles = new ArrayList<>(pythonHandle.getPreparedFiles(setupFile));
+            versionFiles.add(setupFile);
+            versionFiles.add(config.getCacheResolver().resolve(cacheDescriptor));
+            use(versionFiles);
 
-            File archive = config.getCacheResolver().resolve(cacheDescriptor);
+            // a detached process that did not finish installing the hook environments leaves the pending file
+            boolean complete = !force && !pendingFile.exists();
+            boolean upToDate;
+            try (Timings.Phase phase = timings.start("up-to-date check")) {
+                upToDate = complete && isUpToDate(stateFile, setupFile);
+                phase.cacheHit(upToDate);
+            }
+            if (upToDate) {
+                logger.info("pre-commit version {} is already installed and up to date, skipping.", version);
+                snapshotMissingHookEnvironments();
+                recordUse(setupFile, config.getCacheResolver().resolve(cacheDescriptor));
+                return;
+            }
+            if (complete && installHookShims(stateFile, shimFile, setupFile)) {
+                logger.info("pre-commit version {} is already installed, only the Git hooks were written.", version);
+                snapshotMissingHookEnvironments();
+                recordUse(setupFile, config.getCacheResolver().resolve(cacheDescriptor));
+                return;
+            }
+            stateFile.delete();
+            shimFile.delete();
+            pendingFile.delete();
 
-            downloadFileIfMissing(downloadUrl, archive);
+            logger.info("Installing pre-commit version {}.", version);
 
-            File installDirectory = getInstallDirectory();
-            copyFileIfMissing(archive, installDirectory);
+            if (expectedSha256 != null && !Checksums.isSha256(expectedSha256)) {
+                throw new InstallationException("Invalid expected SHA-256 checksum " + expectedSha256);
+            }
+
+            String downloadPath = version + "/" + setupFileName;
+
+            File archive;
+            try (Timings.Phase phase = timings.start("cache resolution")) {
+                archive = config.getCacheResolver().resolve(cacheDescriptor);
+                phase.cacheHit(archive.isFile());
+            }
+
+            // only one build downloads the archive, the others wait and then find it in the cache
+            try (CacheLock ignored = config.getCacheResolver().lock(cacheDescriptor)) {
+                // when the archive is linked from the store, it is the only copy written while downloading
+                File[] downloadCopies = storeDirectory == null || materialization == Materialization.COPY
+                        ? new File[]{setupFile}
+                        : new File[0];
+                downloadFileIfMissing(cacheDescriptor, downloadPath, archive, downloadCopies);
+
+                if (storeDirectory != null) {
+                    materializeFileIfMissing(archive, setupFile);
+                } else {
+                    copyFileIfMissing(archive, installDirectory);
+                }
+            } catch (IOException e) {
+                throw new InstallationException("Could not lock " + archive, e);
+            }
 
-            File setupFile = new File(installDirectory + "/" + setupFileName);
             if (!setupFile.exists()) {
                 throw new InstallationException("Could not find " + setupFileName);
             }
 
-            pythonHandle.installPrecommit(setupFile, hookTypes);
+            CacheDescriptor hookEnvironments = cacheHookEnvironments ? getHookEnvironmentsDescriptor() : null;
+            if (hookEnvironments != null) {
+                use(Collections.singletonList(config.getCacheResolver().resolve(hookEnvironments)));
+            }
+            boolean snapshotExists = hookEnvironments != null && restoreHookEnvironments(hookEnvironments);
+
+            try (Timings.Phase ignored = timings.start("install hooks")) {
+                pythonHandle.installPrecommit(setupFile, version, hookTypes, !backgroundEnvironments);
+            }
+            captureHookShim(shimFile);
+
+            if (backgroundEnvironments) {
+                startEnvironmentsInstall(setupFile, stateFile, pendingFile, snapshotExists ? null : hookEnvironments);
+            } else {
+                if (hookEnvironments != null && !snapshotExists) {
+                    snapshotHookEnvironments(hookEnvironments);
+                }
+                writeInstallState(stateFile, setupFile, pythonHandle.getPythonExecutable());
+            }
+
+            if (hookEnvironments != null) {
+                recordUse(setupFile, archive, config.getCacheResolver().resolve(hookEnvironments));
+            } else {
+                recordUse(setupFile, archive);
+            }
 
             logger.info("Successfully installed pre-commit.");
         } catch (DownloadException e) {
@@ -80,6 +304,295 @@ public class BinaryInstaller {
         }
     }
 
+    /**
+     * Starts installing the hook environments in the background. The install state is only written once they are
+     * installed, so that a build that fails or ends before that installs again.
+     * <p>
+     * When the process is joined, the install state is written once it succeeded, and the hook environments are
+     * snapshotted into {@code snapshot} unless it is {@code null}. A detached process is never joined, so the
+     * install state is written right away together with {@code pendingFile}, which the process deletes once it
+     * succeeded. The installation is not up to date while the pending file exists.
+     */
+    private void startEnvironmentsInstall(File setupFile, File stateFile, File pendingFile, CacheDescriptor snapshot)
+            throws PythonException, InstallationException {
+        String interpreter = pythonHandle.getPythonExecutable();
+        File logFile = new File(config.getInstallDirectory(), ENVIRONMENTS_LOG_FILE_NAME);
+
+        if (detachEnvironments) {
+            try {
+                Files.write(pendingFile.toPath(), new byte[0]);
+            } catch (IOException e) {
+                throw new InstallationException("Could not write " + pendingFile, e);
+            }
+            pythonHandle.startEnvironmentsInstall(setupFile, logFile, pendingFile);
+            writeInstallState(stateFile, setupFile, interpreter);
+            logger.info("Installing the pre-commit hook environments in a detached process, see {}.", logFile);
+            return;
+        }
+
+        Process process = pythonHandle.startEnvironmentsInstall(setupFile, logFile, null);
+        logger.info("Installing the pre-commit hook environments in the background, see {}.", logFile);
+
+        backgroundInstall = new BackgroundInstall(process, logFile, new BackgroundInstall.Completion() {
+            @Override
+            public void succeeded() {
+                if (snapshot != null) {
+                    snapshotHookEnvironments(snapshot);
+                }
+                writeInstallState(stateFile, setupFile, interpreter);
+            }
+
+            @Override
+            public void failed() {
+                stateFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Snapshots the hook environments of an installation that is up to date if there is no snapshot yet, for
+     * example because a detached process installed them after the build that started it had ended.
+     */
+    private void snapshotMissingHookEnvironments() throws PythonException, InstallationException {
+        if (!cacheHookEnvironments) {
+            return;
+        }
+
+        CacheDescriptor descriptor = getHookEnvironmentsDescriptor();
+        File snapshot = config.getCacheResolver().resolve(descriptor);
+        use(Collections.singletonList(snapshot));
+        if (!snapshot.isFile()) {
+            snapshotHookEnvironments(descriptor);
+        }
+    }
+
+    /**
+     * Downloads and verifies the archive into the cache without installing it. Returns the cached archive.
+     */
+    File prefetch() throws InstallationException {
+        if (expectedSha256 != null && !Checksums.isSha256(expectedSha256)) {
+            throw new InstallationException("Invalid expected SHA-256 checksum " + expectedSha256);
+        }
+
+        String downloadPath = version + "/" + getSetupFileName(version);
+        CacheDescriptor cacheDescriptor = new CacheDescriptor("pre-commit", version, ARCHIVE_EXTENSION);
+
+        File archive = config.getCacheResolver().resolve(cacheDescriptor);
+        try (CacheLock ignored = config.getCacheResolver().lock(cacheDescriptor)) {
+            downloadFileIfMissing(cacheDescriptor, downloadPath, archive);
+        } catch (IOException e) {
+            throw new InstallationException("Could not lock " + archive, e);
+        } catch (DownloadException e) {
+            throw new InstallationException("Could not download pre-commit", e);
+        }
+        return archive;
+    }
+
+    /**
+     * Keeps {@code files} from being evicted until the uses are released.
+     */
+    private void use(List<File> files) throws InstallationException {
+        for (File file : files) {
+            try {
+                uses.add(CacheLock.acquireUse(file));
+            } catch (IOException e) {
+                throw new InstallationException("Could not lock " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Marks this version as used in the cache and in the install directory, evicting the least recently used
+     * versions from both if there are too many.
+     */
+    private void recordUse(File setupFile, File... cachedFiles) throws PythonException {
+        try (Timings.Phase ignored = timings.start("cache eviction")) {
+            File installIndexFile = new File(config.getInstallDirectory(), CachePruner.INDEX_FILE_NAME);
+            CachePruner pruner = new CachePruner()
+                    .setMaxSize(maxCacheSize)
+                    .setMaxVersions(maxCachedVersions);
+
+            pruner.touch(config.getCacheResolver().getIndexFile(), version, cachedFiles);
+
+            List<File> installedFiles = new ArrayList<>(pythonHandle.getPreparedFiles(setupFile));
+            installedFiles.add(setupFile);
+            pruner.touch(installIndexFile, version, installedFiles.toArray(new File[0]));
+        }
+    }
+
+    static String getSetupFileName(String version) {
+        return String.format("pre-commit-%s.%s", version.replace("v", ""), ARCHIVE_EXTENSION);
+    }
+
+    private boolean isUpToDate(File stateFile, File setupFile) {
+        InstallState installedState = InstallState.read(stateFile);
+        if (installedState == null || !setupFile.isFile()) {
+            return false;
+        }
+
+        try {
+            InstallState currentState = computeInstallState(setupFile, installedState.getInterpreterName());
+            return installedState.equals(currentState) && pythonHandle.isPrepared(setupFile);
+        } catch (IOException | PythonException e) {
+            logger.debug("Could not compute the current install state.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the Git hooks without running pre-commit, if nothing but the hooks changed since the last installation.
+     * The hook script pre-commit generated then serves as the template. Returns whether the hooks were written.
+     */
+    private boolean installHookShims(File stateFile, File shimFile, File setupFile) {
+        InstallState installedState = InstallState.read(stateFile);
+        HookShim shim = HookShim.read(shimFile);
+        if (installedState == null || shim == null || !setupFile.isFile()) {
+            return false;
+        }
+
+        try (Timings.Phase phase = timings.start("hook shims")) {
+            InstallState currentState = computeInstallState(setupFile, installedState.getInterpreterName());
+            if (currentState == null || !installedState.equalsExceptHooks(currentState)
+                    || !pythonHandle.isPrepared(setupFile)) {
+                return false;
+            }
+
+            GitRepository repository = GitRepository.find(config.getWorkingDirectory());
+            if (repository.getHooksPath() != null) {
+                // pre-commit refuses to install into core.hooksPath, let it report that
+                return false;
+            }
+            for (String hookType : hookTypes) {
+                shim.install(repository.getHooksDirectory(), hookType);
+            }
+            phase.cacheHit(true);
+        } catch (IOException | PythonException e) {
+            logger.debug("Could not write the Git hooks without pre-commit.", e);
+            return false;
+        }
+
+        writeInstallState(stateFile, setupFile, installedState.getInterpreterName());
+        return true;
+    }
+
+    private void captureHookShim(File shimFile) {
+        try {
+            GitRepository repository = GitRepository.find(config.getWorkingDirectory());
+            if (repository != null && hookTypes.length > 0) {
+                HookShim.capture(repository.getHooksDirectory(), hookTypes[0], shimFile);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not keep the Git hook script in {}.", shimFile, e);
+        }
+    }
+
+    private void writeInstallState(File stateFile, File setupFile, String interpreter) {
+        try {
+            InstallState state = computeInstallState(setupFile, interpreter);
+            if (state != null) {
+                state.write(stateFile);
+            } else {
+                logger.debug("{} is not inside a Git repository, not recording the install state.",
+                        config.getWorkingDirectory());
+            }
+        } catch (IOException e) {
+            logger.warn("Could not record the install state in {}.", stateFile, e);
+        }
+    }
+
+    private InstallState computeInstallState(File setupFile, String interpreter) throws IOException {
+        GitRepository repository = GitRepository.find(config.getWorkingDirectory());
+        if (repository == null) {
+            return null;
+        }
+
+        InstallState state = new InstallState()
+                .setVersion(version)
+                .setHookTypes(hookTypes)
+                .setInstallMode(config.getInstallMode())
+                .setConfigHash(hash(new File(config.getWorkingDirectory(), CONFIG_FILE_NAME)))
+                .setArchiveHash(hash(setupFile))
+                .setInterpreter(interpreter, Executables.which(interpreter));
+
+        File hooksDirectory = repository.getHooksDirectory();
+        for (String hookType : hookTypes) {
+            state.setHookHash(hookType, hash(new File(hooksDirectory, hookType)));
+        }
+        return state;
+    }
+
+    private CacheDescriptor getHookEnvironmentsDescriptor() throws PythonException, InstallationException {
+        try {
+            String configHash = hash(new File(config.getWorkingDirectory(), CONFIG_FILE_NAME));
+            String classifier = HookEnvironmentSnapshot.getClassifier(configHash, pythonHandle.getPythonExecutable(),
+                    HookEnvironmentSnapshot.getHomeDirectory());
+            return new CacheDescriptor(HookEnvironmentSnapshot.NAME, version, classifier,
+                    HookEnvironmentSnapshot.EXTENSION);
+        } catch (IOException e) {
+            throw new InstallationException("Could not hash " + CONFIG_FILE_NAME, e);
+        }
+    }
+
+    /**
+     * Restores the hook environments from the snapshot, unless there are hook environments already. Returns whether
+     * a snapshot exists.
+     */
+    private boolean restoreHookEnvironments(CacheDescriptor descriptor) {
+        File snapshot = config.getCacheResolver().resolve(descriptor);
+        if (!snapshot.isFile()) {
+            logger.debug("No snapshot of the hook environments at {}.", snapshot);
+            return false;
+        }
+
+        File home = HookEnvironmentSnapshot.getHomeDirectory();
+        String[] contents = home.list();
+        if (contents != null && contents.length > 0) {
+            logger.info("Hook environments already exist in {}, not restoring {}.", home, snapshot);
+            return true;
+        }
+
+        try (CacheLock ignored = config.getCacheResolver().lock(descriptor);
+             Timings.Phase phase = timings.start("hook environments restore").bytes(snapshot.length())) {
+            if (home.isDirectory()) {
+                home.delete();
+            }
+            HookEnvironmentSnapshot.restore(snapshot, home);
+            phase.cacheHit(true);
+        } catch (IOException e) {
+            logger.warn("Could not restore the hook environments from {}.", snapshot, e);
+        }
+        return true;
+    }
+
+    private void snapshotHookEnvironments(CacheDescriptor descriptor) {
+        File home = HookEnvironmentSnapshot.getHomeDirectory();
+        if (!home.isDirectory()) {
+            logger.debug("No hook environments in {} to snapshot.", home);
+            return;
+        }
+
+        File snapshot = config.getCacheResolver().resolve(descriptor);
+        try (CacheLock ignored = config.getCacheResolver().lock(descriptor);
+             Timings.Phase phase = timings.start("hook environments snapshot")) {
+            if (!snapshot.isFile()) {
+                List<String[]> repositories = HookEnvironmentSnapshot.readRepositories(
+                        new File(config.getWorkingDirectory(), CONFIG_FILE_NAME));
+                if (repositories.isEmpty()) {
+                    logger.debug("{} references no hook repositories, not snapshotting them.", CONFIG_FILE_NAME);
+                    return;
+                }
+                HookEnvironmentSnapshot.pack(home, snapshot, pythonHandle.getPythonExecutable(), repositories);
+                phase.bytes(snapshot.length());
+            }
+        } catch (IOException | PythonException e) {
+            logger.warn("Could not snapshot the hook environments into {}.", snapshot, e);
+        }
+    }
+
+    private String hash(File file) throws IOException {
+        return file.isFile() ? digestCache.sha256(file) : null;
+    }
+
     private File getInstallDirectory() {
         File installDirectory = new File(config.getInstallDirectory(), INSTALL_PATH);
         if (!installDirectory.exists()) {
@@ -94,11 +607,13 @@ public class BinaryInstaller {
             File destinationFile = new File(destinationDirectory.getPath() + "/" + archive.getName());
 
             boolean fileExists = destinationFile.exists();
-            boolean fileEqual = fileExists && Files.equal(archive, destinationFile);
+            boolean fileEqual = fileExists && digestCache.equal(archive, destinationFile);
 
             if (!fileExists || !fileEqual) {
                 logger.info("Copying {} into {}.", archive, destinationDirectory);
-                fileCopier.copy(archive.getPath(), destinationDirectory.getPath());
+                try (Timings.Phase ignored = timings.start("copy").cacheHit(false).bytes(archive.length())) {
+                    fileCopier.copy(archive.getPath(), destinationDirectory.getPath());
+                }
             } else {
                 logger.info("File {} already in {}, skipping copy.", archive.getName(), destinationDirectory);
             }
@@ -107,46 +622,215 @@ public class BinaryInstaller {
         }
     }
 
+    private void materializeFileIfMissing(File archive, File destinationFile) throws FileCopyException {
+        try {
+            String sha256 = digestCache.sha256(archive);
+
+            ArtifactStore store = new ArtifactStore(storeDirectory, digestCache);
+            File storedFile = store.add(archive, sha256);
+
+            boolean fileLinked = store.isLinked(storedFile, destinationFile);
+            boolean fileEqual = fileLinked || (destinationFile.isFile() && digestCache.equal(storedFile, destinationFile));
+
+            if (!fileEqual) {
+                logger.info("Materializing {} into {} ({}).", storedFile, destinationFile, materialization);
+                try (Timings.Phase ignored = timings.start("materialize").cacheHit(false)) {
+                    store.materialize(storedFile, destinationFile, materialization);
+                }
+            } else {
+                logger.info("File {} already in {}, skipping copy.", archive.getName(), destinationFile.getParent());
+            }
+        } catch (IOException e) {
+            throw new FileCopyException("Failed to materialize " + archive + " into " + destinationFile, e);
+        }
+    }
+
     private void copyFile(File archive, File destinationDirectory) throws FileCopyException {
         logger.info("Copying {} into {}.", archive, destinationDirectory);
         fileCopier.copy(archive.getPath(), destinationDirectory.getPath());
     }
 
-    private void downloadFileIfMissing(String downloadUrl, File destination) throws DownloadException {
+    private void downloadFileIfMissing(CacheDescriptor cacheDescriptor, String downloadPath, File destination,
+                                       File... copies) throws DownloadException {
         boolean fileExists = destination.exists();
-        boolean fileValid = fileExists && validateFile(downloadUrl, destination);
+        boolean fileValid = fileExists && validateFile(downloadPath, destination);
 
         if (!fileExists || !fileValid) {
-            downloadFile(downloadUrl, destination);
+            if (fileExists) {
+                // otherwise the repositories would resolve the invalid file again
+                destination.delete();
+            }
+            if (fetchFile(cacheDescriptor, destination)) {
+                return;
+            }
+            if (config.isOffline()) {
+                throw new DownloadException("Cannot download " + downloadPath + " in offline mode.");
+            }
+            downloadFile(downloadPath, destination, copies);
         } else {
             logger.info("File {} already exists, skipping download.", destination);
         }
     }
 
-    private void downloadFile(String downloadUrl, File destination) throws DownloadException {
-        logger.info("Downloading {} to {}.", downloadUrl, destination);
-        fileDownloader.download(downloadUrl, destination.getPath());
-        validateFile(downloadUrl, destination);
+    /**
+     * Downloads the archive into {@code destination} and {@code copies}, verifying its checksum in the same pass.
+     * When a download root fails, the download continues from the next one, resuming the part that was already
+     * downloaded.
+     */
+    private void downloadFile(String downloadPath, File destination, File... copies) throws DownloadException {
+        List<String> roots = getDownloadRoots(downloadPath);
+        String hash = getExpectedHash(downloadPath, destination, roots);
+
+        DownloadException failure = null;
+        for (String root : roots) {
+            String downloadUrl = root + downloadPath;
+            logger.info("Downloading {} to {}.", downloadUrl, destination);
+
+            String destinationHash;
+            try (Timings.Phase phase = timings.start("download").cacheHit(false)) {
+                destinationHash = fileDownloader.download(downloadUrl, destination.getPath(), hash, copies);
+                phase.bytes(destination.length());
+            } catch (DownloadException e) {
+                if (roots.size() == 1) {
+                    throw e;
+                }
+                logger.warn("Could not download {}, trying the next download root.", downloadUrl, e);
+                mirrorSelector.recordFailure(root);
+                failure = e;
+                continue;
+            }
+            logger.info("{} checksum verified.", destination);
+
+            if (roots.size() > 1) {
+                mirrorSelector.recordSuccess(root);
+            }
+            try {
+                Checksums.writeSidecar(destination, destinationHash);
+                digestCache.remember(destination, destinationHash);
+                for (File copy : copies) {
+                    digestCache.remember(copy, destinationHash);
+                }
+            } catch (IOException e) {
+                throw new DownloadException("Failed to record the checksum of " + destination, e);
+            }
+            return;
+        }
+        throw failure;
+    }
+
+    /**
+     * Fetches the archive into {@code destination} through the cache resolver, from the remote repositories of the
+     * build. The repositories verify their own checksums, the configured or previously recorded checksum is verified
+     * on top. Returns whether the archive was fetched.
+     */
+    private boolean fetchFile(CacheDescriptor cacheDescriptor, File destination) throws DownloadException {
+        File fetched;
+        try (Timings.Phase phase = timings.start("repository resolution")) {
+            fetched = config.getCacheResolver().fetch(cacheDescriptor);
+            phase.cacheHit(false);
+            if (fetched == null) {
+                return false;
+            }
+            phase.bytes(fetched.length());
+        }
+
+        try {
+            if (!fetched.getAbsoluteFile().equals(destination.getAbsoluteFile())) {
+                Files.copy(fetched.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String hash = digestCache.sha256(destination);
+            String expectedHash = expectedSha256 != null ? expectedSha256 : Checksums.readSidecar(destination);
+            if (expectedHash != null && !expectedHash.equalsIgnoreCase(hash)) {
+                destination.delete();
+                throw new DownloadException("Checksum of " + fetched + " doesn't match, expected "
+                        + expectedHash + " but got " + hash + ".");
+            }
+            Checksums.writeSidecar(destination, hash);
+        } catch (IOException e) {
+            throw new DownloadException("Failed to record the checksum of " + destination, e);
+        }
+
+        logger.info("Resolved {} from the remote repositories.", destination);
+        return true;
+    }
+
+    /**
+     * Returns the download roots, fastest first. They are only probed once the archive is missing from the cache.
+     */
+    private List<String> getDownloadRoots(String downloadPath) {
+        if (orderedDownloadRoots == null) {
+            try (Timings.Phase ignored = timings.start("mirror selection")) {
+                orderedDownloadRoots = mirrorSelector.order(downloadRoots, downloadPath);
+            }
+        }
+        return orderedDownloadRoots;
     }
 
-    private boolean validateFile(String downloadUrl, File destination) throws DownloadException {
+    private boolean validateFile(String downloadPath, File destination) throws DownloadException {
         try {
             logger.info("Verifying {} checksum.", destination);
-            downloadUrl += ".sha256sum";
-            String hash = IOUtils.toString(URI.create(downloadUrl), StandardCharsets.UTF_8).split("\\s+")[0];
-            String destinationHash = Files.asByteSource(destination).hash(Hashing.sha256()).toString();
+            // the archive is cached, the roots are not worth probing for its checksum
+            String hash = getExpectedHash(downloadPath, destination, downloadRoots);
+            if (hash == null) {
+                logger.warn("No checksum of {} is available offline, skipping verification.", destination);
+                return true;
+            }
+
+            String destinationHash;
+            try (Timings.Phase ignored = timings.start("hashing").bytes(destination.length())) {
+                destinationHash = digestCache.sha256(destination);
+            }
 
-            boolean hashEquals = hash.equals(destinationHash);
+            boolean hashEquals = hash.equalsIgnoreCase(destinationHash);
 
             if (hashEquals) {
                 logger.info("{} checksum verified.", destination);
+                Checksums.writeSidecar(destination, destinationHash);
             } else {
                 logger.info("{} checksum doesn't match.", destination);
             }
 
             return hashEquals;
         } catch (IOException e) {
-            throw new DownloadException("Failed to verify downloaded file checksum.");
+            throw new DownloadException("Failed to verify downloaded file checksum.", e);
+        }
+    }
+
+    /**
+     * Returns the checksum the archive must have, preferring the configured one and the one recorded locally by a
+     * previous verification over the one published next to the download. Returns {@code null} when offline and no
+     * checksum is known locally. The published checksum is fetched from the first of the {@code roots} that has it.
+     */
+    private String getExpectedHash(String downloadPath, File destination, List<String> roots)
+            throws DownloadException {
+        if (expectedSha256 != null) {
+            return expectedSha256;
+        }
+
+        String localHash = Checksums.readSidecar(destination);
+        if (localHash != null) {
+            return localHash;
+        }
+
+        if (config.isOffline()) {
+            return null;
+        }
+
+        DownloadException failure = null;
+        for (String root : roots) {
+            try (Timings.Phase ignored = timings.start("checksum fetch").cacheHit(false)) {
+                return fileDownloader.downloadText(root + downloadPath + ".sha256sum").trim().split("\\s+")[0];
+            } catch (DownloadException e) {
+                if (roots.size() == 1) {
+                    throw e;
+                }
+                logger.warn("Could not download the checksum of {} from {}, trying the next download root.",
+                        downloadPath, root);
+                mirrorSelector.recordFailure(root);
+                failure = e;
+            }
         }
+        throw failure;
     }
 }
@@ -0,0 +1,118 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads and verifies the archives of several pre-commit versions into the cache concurrently, without
+ * installing them into a project.
+ */
+public class BinaryPrefetcher {
+    private final Logger logger;
+    private final InstallConfig config;
+    private final FileDownloader fileDownloader;
+    private String[] versions;
+    private String[] downloadRoots = {BinaryInstaller.DEFAULT_DOWNLOAD_ROOT};
+    private int concurrency = 4;
+
+    public BinaryPrefetcher(InstallConfig config, FileDownloader fileDownloader) {
+        logger = LoggerFactory.getLogger(getClass());
+        this.config = config;
+        this.fileDownloader = fileDownloader;
+    }
+
+    public BinaryPrefetcher setVersions(String[] versions) {
+        this.versions = versions;
+        return this;
+    }
+
+    /**
+     * The download roots to download each version from. The fastest root that is reachable is used, and if a
+     * download fails, it continues from the next one.
+     */
+    public BinaryPrefetcher setDownloadRoots(String[] downloadRoots) {
+        if (downloadRoots != null && downloadRoots.length > 0) {
+            this.downloadRoots = downloadRoots;
+        }
+        return this;
+    }
+
+    public BinaryPrefetcher setConcurrency(int concurrency) {
+        if (concurrency > 0) {
+            this.concurrency = concurrency;
+        }
+        return this;
+    }
+
+    public void prefetch() throws InstallationException {
+        if (versions == null || versions.length == 0) {
+            throw new InstallationException("No pre-commit versions to prefetch");
+        }
+
+        logger.info("Prefetching pre-commit versions {} with {} concurrent downloads.",
+                String.join(", ", versions), concurrency);
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, versions.length));
+        Map<String, Future<Long>> futures = new LinkedHashMap<>();
+        try {
+            for (String version : versions) {
+                futures.put(version, executor.submit(() -> prefetch(version)));
+            }
+
+            List<String> failed = new ArrayList<>();
+            for (Map.Entry<String, Future<Long>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    logger.error("Could not prefetch pre-commit version {}.", entry.getKey(), e.getCause());
+                    failed.add(entry.getKey());
+                }
+            }
+
+            logger.info("Prefetched {} of {} pre-commit versions in {} ms.", versions.length - failed.size(),
+                    versions.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (!failed.isEmpty()) {
+                throw new InstallationException("Could not prefetch pre-commit versions " + String.join(", ", failed));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InstallationException("Unexpected interruption while prefetching pre-commit", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Prefetches a single version from the fastest download root that provides it and returns the time it took in
+     * milliseconds.
+     */
+    private long prefetch(String version) throws InstallationException {
+        long start = System.nanoTime();
+
+        File archive = config.getCacheResolver().resolve(
+                new CacheDescriptor("pre-commit", version, BinaryInstaller.ARCHIVE_EXTENSION));
+        // digests are memoized next to the archive, as nothing may be written into a project directory
+        DigestCache digestCache = new DigestCache(new File(archive.getParentFile(), DigestCache.FILE_NAME));
+
+        new BinaryInstaller(config, new DefaultFileCopier(), fileDownloader, null, digestCache, new Timings())
+                .setVersion(version)
+                .setDownloadRoots(downloadRoots)
+                .prefetch();
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Prefetched {} ({} bytes) in {} ms.", archive.getName(), archive.length(), millis);
+        return millis;
+    }
+}
@@ -1,15 +1,43 @@
 package io.github.osbeorn.maven.plugin.precommit.lib;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import io.github.osbeorn.maven.plugin.precommit.lib.ProcessRunner.LogLevel;
+import io.github.osbeorn.maven.plugin.precommit.lib.ProcessRunner.ProcessResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class BinaryRunner {
     public static final String INSTALL_PATH = "/pre-commit";
+    private static final int OUTPUT_LINES = 10_000;
+    private static final int MAX_BATCH_FILES = 1_000;
+    // stay well below the command line limits, which are a lot lower on Windows
+    private static final int MAX_BATCH_CHARACTERS = isWindows() ? 30_000 : 250_000;
     private final Logger logger;
     private final InstallConfig config;
     private final PythonHandle pythonHandle;
+    private String version, hookId, hookStage;
+    private String[] files;
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private boolean incremental;
+    private int shardIndex = 0, shardCount = 1;
 
     public BinaryRunner(InstallConfig config, PythonHandle pythonHandle) {
         logger = LoggerFactory.getLogger(getClass());
@@ -17,6 +45,308 @@ public class BinaryRunner {
         this.pythonHandle = pythonHandle;
     }
 
+    public BinaryRunner setVersion(String version) {
+        this.version = version;
+        return this;
+    }
+
+    public BinaryRunner setFiles(String[] files) {
+        this.files = files;
+        return this;
+    }
+
+    public BinaryRunner setHookId(String hookId) {
+        this.hookId = hookId;
+        return this;
+    }
+
+    public BinaryRunner setHookStage(String hookStage) {
+        this.hookStage = hookStage;
+        return this;
+    }
+
+    public BinaryRunner setConcurrency(int concurrency) {
+        if (concurrency > 0) {
+            this.concurrency = concurrency;
+        }
+        return this;
+    }
+
+    public BinaryRunner setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public BinaryRunner setShard(int shardIndex, int shardCount) {
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        return this;
+    }
+
+    /**
+     * Runs the hooks on the candidate files, split into batches that are checked concurrently. The output of the
+     * batches is logged in batch order and the highest return code of all batches is returned.
+     * <p>
+     * In incremental mode only the files that did not pass with the current configuration before are checked, and
+     * the files of the batches that pass are recorded in the {@link FileIndex}.
+     * <p>
+     * When sharded, only the files that hash to this shard are checked. The hash only depends on the path and the
+     * shard count, so shards running on different machines check disjoint sets of files.
+     */
+    public RunResult run() throws RunException {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new RunException("Invalid shard " + shardIndex + " of " + shardCount
+                    + ", the index must be at least 0 and less than the count");
+        }
+
+        long start = System.nanoTime();
+        File setupFile = new File(getInstallDirectory(), BinaryInstaller.getSetupFileName(version));
+
+        // keeps the version from being evicted by concurrent builds while the hooks run
+        List<CacheLock> uses = new ArrayList<>();
+        try {
+            uses.add(CacheLock.acquireUse(setupFile));
+            for (File preparedFile : pythonHandle.getPreparedFiles(setupFile)) {
+                uses.add(CacheLock.acquireUse(preparedFile));
+            }
+            if (!setupFile.isFile()) {
+                throw new RunException("Could not find " + setupFile + ", run the install goal first");
+            }
+            return run(setupFile, start);
+        } catch (IOException e) {
+            throw new RunException("Could not lock " + setupFile, e);
+        } catch (PythonException e) {
+            throw new RunException("Could not find the Python environment to run " + setupFile + " with", e);
+        } finally {
+            CacheLock.releaseAll(uses);
+        }
+    }
+
+    private RunResult run(File setupFile, long start) throws RunException {
+        List<String> tracked = getCandidateFiles();
+        List<String> candidates = shardCount > 1 ? selectShardFiles(tracked) : tracked;
+        File indexFile = new File(config.getInstallDirectory(), FileIndex.FILE_NAME);
+        FileIndex index = null;
+        long fingerprint = 0;
+        List<FileIndex.Entry> updates = new ArrayList<>();
+        if (incremental) {
+            index = FileIndex.load(indexFile);
+            fingerprint = getConfigFingerprint();
+            int total = candidates.size();
+            candidates = selectChangedFiles(candidates, index, fingerprint, updates);
+            logger.info("{} of {} files changed since they last passed.", candidates.size(), total);
+        }
+
+        if (candidates.isEmpty()) {
+            logger.info("No files to check.");
+            writeIndex(index, indexFile, tracked, updates);
+            return createResult(0, 0, 0, start);
+        }
+
+        List<List<String>> batches = createBatches(candidates);
+        logger.info("Running pre-commit on {} files in {} batches.", candidates.size(), batches.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, batches.size()), runnable -> {
+            Thread thread = new Thread(runnable, "pre-commit-run");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long batchFingerprint = fingerprint;
+        try {
+            List<Future<BatchResult>> results = new ArrayList<>();
+            for (List<String> batch : batches) {
+                results.add(executor.submit(() -> runBatch(setupFile, batch, batchFingerprint)));
+            }
+
+            int exitCode = 0;
+            for (Future<BatchResult> future : results) {
+                BatchResult batchResult = future.get();
+                batchResult.result.log(logger, LogLevel.INFO, LogLevel.WARN);
+                exitCode = Math.max(exitCode, batchResult.result.getExitCode());
+                updates.addAll(batchResult.entries);
+            }
+            writeIndex(index, indexFile, tracked, updates);
+            return createResult(exitCode, candidates.size(), batches.size(), start);
+        } catch (ExecutionException e) {
+            throw new RunException("Failed to run pre-commit", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RunException("Unexpected interruption while waiting for pre-commit", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RunResult createResult(int exitCode, int files, int batches, long start) {
+        return new RunResult(shardIndex, shardCount, exitCode, files, batches,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private List<String> selectShardFiles(List<String> candidates) {
+        List<String> selected = new ArrayList<>();
+        for (String path : candidates) {
+            if (Hashing.consistentHash(FileIndex.pathHash(path), shardCount) == shardIndex) {
+                selected.add(path);
+            }
+        }
+        logger.info("Shard {} of {} has {} of {} files.", shardIndex, shardCount, selected.size(), candidates.size());
+        return selected;
+    }
+
+    private BatchResult runBatch(File setupFile, List<String> batch, long fingerprint)
+            throws PythonException, IOException {
+        ProcessResult result = pythonHandle.runPrecommit(
+                setupFile, getRunArguments(batch), config.getWorkingDirectory(), OUTPUT_LINES);
+
+        List<FileIndex.Entry> entries = new ArrayList<>();
+        if (incremental && result.getExitCode() == 0) {
+            for (String path : batch) {
+                File file = new File(config.getWorkingDirectory(), path);
+                if (file.isFile()) {
+                    BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                    entries.add(new FileIndex.Entry(FileIndex.pathHash(path), attributes.size(), getModified(attributes),
+                            FileIndex.contentHash(Checksums.digest(file)), fingerprint));
+                }
+            }
+        }
+        return new BatchResult(result, entries);
+    }
+
+    /**
+     * Returns the files that are not in the index with the same metadata or content and configuration. Files whose
+     * metadata changed but whose content did not are not returned, their new metadata is added to {@code updates}.
+     */
+    private List<String> selectChangedFiles(List<String> candidates, FileIndex index, long fingerprint,
+                                            List<FileIndex.Entry> updates) throws RunException {
+        List<String> changed = new ArrayList<>();
+        for (String path : candidates) {
+            long pathHash = FileIndex.pathHash(path);
+            FileIndex.Entry entry = index.find(pathHash);
+            File file = new File(config.getWorkingDirectory(), path);
+            if (entry == null || entry.getConfigFingerprint() != fingerprint || !file.isFile()) {
+                changed.add(path);
+                continue;
+            }
+
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                long modified = getModified(attributes);
+                if (entry.hasMetadata(attributes.size(), modified)) {
+                    continue;
+                }
+
+                byte[] contentHash = FileIndex.contentHash(Checksums.digest(file));
+                if (entry.hasContent(contentHash)) {
+                    updates.add(new FileIndex.Entry(pathHash, attributes.size(), modified, contentHash, fingerprint));
+                } else {
+                    changed.add(path);
+                }
+            } catch (IOException e) {
+                throw new RunException("Could not read " + file, e);
+            }
+        }
+        return changed;
+    }
+
+    private void writeIndex(FileIndex index, File indexFile, List<String> tracked, List<FileIndex.Entry> updates) {
+        if (index == null) {
+            return;
+        }
+
+        // drop the files that are no longer tracked, unless only some files were checked
+        Set<Long> retained = null;
+        if (files == null || files.length == 0) {
+            retained = new HashSet<>();
+            for (String path : tracked) {
+                retained.add(FileIndex.pathHash(path));
+            }
+        }
+
+        try {
+            index.write(indexFile, retained, updates);
+        } catch (IOException e) {
+            logger.warn("Could not update the file index {}.", indexFile, e);
+        }
+    }
+
+    /**
+     * Fingerprints everything besides the files themselves that decides whether they pass.
+     */
+    private long getConfigFingerprint() throws RunException {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        File configFile = new File(config.getWorkingDirectory(), BinaryInstaller.CONFIG_FILE_NAME);
+        try {
+            if (configFile.isFile()) {
+                hasher.putBytes(Files.readAllBytes(configFile.toPath()));
+            }
+        } catch (IOException e) {
+            throw new RunException("Could not read " + configFile, e);
+        }
+        for (String value : new String[]{version, hookId, hookStage}) {
+            hasher.putString(String.valueOf(value), StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static long getModified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private List<String> getCandidateFiles() throws RunException {
+        List<String> candidates;
+        if (files != null && files.length > 0) {
+            candidates = new ArrayList<>(Arrays.asList(files));
+        } else {
+            try {
+                candidates = GitRepository.listFiles(config.getWorkingDirectory());
+            } catch (IOException e) {
+                throw new RunException("Could not list the files tracked by Git", e);
+            }
+        }
+        Collections.sort(candidates);
+        return candidates;
+    }
+
+    /**
+     * Splits the sorted files into contiguous batches, at least one per concurrent process, within the limits of
+     * a command line.
+     */
+    private List<List<String>> createBatches(List<String> candidates) {
+        int batchFiles = Math.min(MAX_BATCH_FILES, (candidates.size() + concurrency - 1) / concurrency);
+
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int batchCharacters = 0;
+        for (String file : candidates) {
+            if (!batch.isEmpty() && (batch.size() == batchFiles
+                    || batchCharacters + file.length() + 1 > MAX_BATCH_CHARACTERS)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchCharacters = 0;
+            }
+            batch.add(file);
+            batchCharacters += file.length() + 1;
+        }
+        batches.add(batch);
+        return batches;
+    }
+
+    private List<String> getRunArguments(List<String> batch) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("run");
+        if (hookId != null && !hookId.isEmpty()) {
+            arguments.add(hookId);
+        }
+        if (hookStage != null && !hookStage.isEmpty()) {
+            arguments.add("--hook-stage");
+            arguments.add(hookStage);
+        }
+        arguments.add("--files");
+        arguments.addAll(batch);
+        return arguments;
+    }
+
     private File getInstallDirectory() {
         File installDirectory = new File(config.getInstallDirectory(), INSTALL_PATH);
         if (!installDirectory.exists()) {
@@ -25,4 +355,18 @@ public class BinaryRunner {
         }
         return installDirectory;
     }
+
+    private static final class BatchResult {
+        private final ProcessResult result;
+        private final List<FileIndex.Entry> entries;
+
+        private BatchResult(ProcessResult result, List<FileIndex.Entry> entries) {
+            this.result = result;
+            this.entries = entries;
+        }
+    }
+
+    private static boolean isWindows() {
+        return System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    }
 }
@@ -0,0 +1,127 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Records which files the plugin placed into a cache directory and when they were last used, grouped into entries
+ * by pre-commit version. Only recorded files are ever evicted, so files that other tools put next to them are safe.
+ * <p>
+ * The index is a properties file that callers read and write while holding a {@link CacheLock} on it.
+ */
+final class CacheIndex {
+    private static final String ENTRY_PREFIX = "entry.";
+    private static final String LAST_USED = ".lastUsed";
+    private static final String PATHS = ".paths";
+    private static final String LAST_PRUNED = "lastPruned";
+
+    private final File file;
+    private final Properties properties = new Properties();
+
+    private CacheIndex(File file) {
+        this.file = file;
+    }
+
+    static CacheIndex read(File file) {
+        CacheIndex index = new CacheIndex(file);
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                index.properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                // a damaged index only forgets what can be evicted
+                index.properties.clear();
+            }
+        }
+        return index;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Records that the entry {@code key} consisting of {@code paths} was used at {@code time}. Returns whether the
+     * entry or one of its paths is new.
+     */
+    boolean touch(String key, long time, File... paths) {
+        Set<String> recorded = new LinkedHashSet<>(getPaths(key));
+        boolean added = !properties.containsKey(ENTRY_PREFIX + key + LAST_USED);
+        for (File path : paths) {
+            added |= recorded.add(path.getAbsolutePath());
+        }
+
+        properties.setProperty(ENTRY_PREFIX + key + LAST_USED, String.valueOf(time));
+        properties.setProperty(ENTRY_PREFIX + key + PATHS, String.join(File.pathSeparator, recorded));
+        return added;
+    }
+
+    long getLastUsed(String key) {
+        return parseLong(properties.getProperty(ENTRY_PREFIX + key + LAST_USED));
+    }
+
+    List<String> getPaths(String key) {
+        String paths = properties.getProperty(ENTRY_PREFIX + key + PATHS);
+        if (paths == null || paths.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(paths.split(Pattern.quote(File.pathSeparator))));
+    }
+
+    /**
+     * Returns the keys of all entries, least recently used first.
+     */
+    List<String> getKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(ENTRY_PREFIX) && name.endsWith(LAST_USED)) {
+                keys.add(name.substring(ENTRY_PREFIX.length(), name.length() - LAST_USED.length()));
+            }
+        }
+        keys.sort(Comparator.comparingLong(this::getLastUsed).thenComparing(Comparator.naturalOrder()));
+        return keys;
+    }
+
+    void remove(String key) {
+        properties.remove(ENTRY_PREFIX + key + LAST_USED);
+        properties.remove(ENTRY_PREFIX + key + PATHS);
+    }
+
+    long getLastPruned() {
+        return parseLong(properties.getProperty(LAST_PRUNED));
+    }
+
+    void setLastPruned(long time) {
+        properties.setProperty(LAST_PRUNED, String.valueOf(time));
+    }
+
+    void write() throws IOException {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "pre-commit-maven-plugin cache index");
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
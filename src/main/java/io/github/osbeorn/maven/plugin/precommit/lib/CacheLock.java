@@ -0,0 +1,341 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock on a cache entry, held across threads of this JVM and across processes, on a lock file next to the entry.
+ * <p>
+ * The first byte of the lock file is locked exclusively while the entry is written. Within the JVM a
+ * {@link ReentrantLock} per lock file serializes access, across processes a {@link FileLock} does.
+ * <p>
+ * The second byte is locked shared for as long as a build uses the entry, from installing it until the hooks ran.
+ * Within the JVM the uses of an entry are counted and share one {@link FileLock}. {@link CachePruner} locks the
+ * second byte exclusively to evict the entry, so it never evicts an entry that is in use.
+ * <p>
+ * Eviction deletes the lock file while holding both locks. A build that was waiting for one of them then holds a
+ * lock on a deleted file, so every lock is taken again until it is held on the lock file that exists.
+ * <p>
+ * File locks belong to the process, and on POSIX systems closing any channel on a file releases all locks the
+ * process holds on it. All locks of this JVM on a lock file therefore share one channel, which is closed once the
+ * last of them is released. Waiting for a lock polls instead of blocking, because interrupting a thread blocked on
+ * the channel would close it.
+ */
+public final class CacheLock implements AutoCloseable {
+    static final String LOCK_EXTENSION = ".lock";
+
+    private static final long WRITE_POSITION = 0;
+    private static final long USE_POSITION = 1;
+    private static final long POLL_MILLIS = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheLock.class);
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+    // guarded by itself
+    private static final Map<String, Use> USES = new HashMap<>();
+    // guarded by itself
+    private static final Map<String, SharedChannel> CHANNELS = new HashMap<>();
+
+    private final Release release;
+    private boolean released;
+
+    private CacheLock(Release release) {
+        this.release = release;
+    }
+
+    static File lockFile(File file) {
+        return new File(file.getPath() + LOCK_EXTENSION);
+    }
+
+    /**
+     * Locks {@code file}, waiting for other threads and processes holding the lock.
+     */
+    static CacheLock acquire(File file) throws IOException {
+        CacheLock lock = acquire(file, true);
+        if (lock == null) {
+            throw new IOException("Could not lock " + file);
+        }
+        return lock;
+    }
+
+    /**
+     * Locks {@code file} if nobody else holds the lock, returns {@code null} otherwise.
+     */
+    static CacheLock tryAcquire(File file) throws IOException {
+        return acquire(file, false);
+    }
+
+    /**
+     * Marks {@code file} as used until the returned lock is closed, waiting while it is being evicted. Any number
+     * of threads and processes may use a file at once. The lock may be closed by any thread.
+     */
+    public static CacheLock acquireUse(File file) throws IOException {
+        File lockFile = lockFile(file).getAbsoluteFile();
+        String key = lockFile.getPath();
+
+        synchronized (USES) {
+            Use use = USES.get(key);
+            while (use != null && use.evicting) {
+                try {
+                    USES.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the eviction of " + file, e);
+                }
+                use = USES.get(key);
+            }
+
+            if (use == null) {
+                LockedFile locked = lock(lockFile, USE_POSITION, true, true);
+                use = new Use(locked);
+                USES.put(key, use);
+            }
+            use.count++;
+        }
+
+        return new CacheLock(() -> releaseUse(key));
+    }
+
+    /**
+     * Locks {@code file} against new uses if no thread or process uses it, returns {@code null} otherwise.
+     */
+    static CacheLock tryAcquireUnused(File file) throws IOException {
+        File lockFile = lockFile(file).getAbsoluteFile();
+        String key = lockFile.getPath();
+
+        synchronized (USES) {
+            if (USES.containsKey(key)) {
+                return null;
+            }
+
+            LockedFile locked = lock(lockFile, USE_POSITION, false, false);
+            if (locked == null) {
+                return null;
+            }
+            Use eviction = new Use(locked);
+            eviction.evicting = true;
+            USES.put(key, eviction);
+        }
+
+        return new CacheLock(() -> releaseUse(key));
+    }
+
+    private static void releaseUse(String key) throws IOException {
+        synchronized (USES) {
+            Use use = USES.get(key);
+            if (use.evicting || --use.count == 0) {
+                USES.remove(key);
+                USES.notifyAll();
+                use.locked.close();
+            }
+        }
+    }
+
+    private static CacheLock acquire(File file, boolean wait) throws IOException {
+        File lockFile = lockFile(file).getAbsoluteFile();
+        ReentrantLock threadLock = LOCKS.computeIfAbsent(lockFile.getPath(), path -> new ReentrantLock());
+
+        if (!threadLock.tryLock()) {
+            if (!wait) {
+                return null;
+            }
+            LOGGER.info("Waiting for another build to finish with {}.", file);
+            threadLock.lock();
+        }
+
+        if (threadLock.getHoldCount() > 1) {
+            // the current thread already holds the file lock
+            return new CacheLock(threadLock::unlock);
+        }
+
+        try {
+            LockedFile locked = lock(lockFile, WRITE_POSITION, false, wait);
+            if (locked == null) {
+                threadLock.unlock();
+                return null;
+            }
+            return new CacheLock(() -> {
+                try {
+                    locked.close();
+                } finally {
+                    threadLock.unlock();
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Locks one byte of {@code lockFile}, retrying if the lock file was deleted while waiting for the lock.
+     */
+    private static LockedFile lock(File lockFile, long position, boolean shared, boolean wait) throws IOException {
+        while (true) {
+            SharedChannel channel = openChannel(lockFile);
+            try {
+                FileLock fileLock = tryLock(channel, position, shared);
+                if (fileLock == null) {
+                    if (!wait) {
+                        closeChannel(channel);
+                        return null;
+                    }
+                    LOGGER.info("Waiting for another build to finish with {}.", lockFile);
+                    do {
+                        try {
+                            Thread.sleep(POLL_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Interrupted while waiting for " + lockFile, e);
+                        }
+                        fileLock = tryLock(channel, position, shared);
+                    } while (fileLock == null);
+                }
+
+                if (channel.isCurrent()) {
+                    return new LockedFile(channel, fileLock);
+                }
+                fileLock.release();
+                closeChannel(channel);
+            } catch (IOException | RuntimeException e) {
+                closeChannel(channel);
+                throw e;
+            }
+        }
+    }
+
+    private static FileLock tryLock(SharedChannel channel, long position, boolean shared) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            // the channel would be closed, releasing the other locks on it
+            throw new InterruptedIOException("Interrupted while locking " + channel.path);
+        }
+        return channel.channel.tryLock(position, 1, shared);
+    }
+
+    /**
+     * Opens the channel of this JVM on {@code lockFile}, or a new one if the lock file was deleted or replaced.
+     */
+    private static SharedChannel openChannel(File lockFile) throws IOException {
+        String key = lockFile.getPath();
+        synchronized (CHANNELS) {
+            SharedChannel channel = CHANNELS.get(key);
+            if (channel == null || !channel.isCurrent()) {
+                lockFile.getParentFile().mkdirs();
+                Path path = lockFile.toPath();
+                FileChannel fileChannel = FileChannel.open(path,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel = new SharedChannel(key, path, fileChannel, fileKey(path));
+                CHANNELS.put(key, channel);
+            }
+            channel.references++;
+            return channel;
+        }
+    }
+
+    private static void closeChannel(SharedChannel channel) throws IOException {
+        // closed while holding the monitor, so that no new channel on the same file is locked before
+        synchronized (CHANNELS) {
+            if (--channel.references == 0) {
+                CHANNELS.remove(channel.key, channel);
+                channel.channel.close();
+            }
+        }
+    }
+
+    /**
+     * Releases all {@code locks}, logging failures.
+     */
+    public static void releaseAll(Collection<CacheLock> locks) {
+        for (CacheLock lock : locks) {
+            try {
+                lock.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not release a cache lock.", e);
+            }
+        }
+    }
+
+    private static Object fileKey(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!released) {
+            released = true;
+            release.run();
+        }
+    }
+
+    private interface Release {
+        void run() throws IOException;
+    }
+
+    private static final class SharedChannel {
+        private final String key;
+        private final Path path;
+        private final FileChannel channel;
+        private final Object fileKey;
+        // guarded by CHANNELS
+        private int references;
+
+        SharedChannel(String key, Path path, FileChannel channel, Object fileKey) {
+            this.key = key;
+            this.path = path;
+            this.channel = channel;
+            this.fileKey = fileKey;
+        }
+
+        boolean isCurrent() {
+            return channel.isOpen() && Files.exists(path) && Objects.equals(fileKey, fileKey(path));
+        }
+    }
+
+    private static final class LockedFile {
+        private final SharedChannel channel;
+        private final FileLock fileLock;
+
+        LockedFile(SharedChannel channel, FileLock fileLock) {
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+
+        void close() throws IOException {
+            try {
+                fileLock.release();
+            } finally {
+                closeChannel(channel);
+            }
+        }
+    }
+
+    private static final class Use {
+        private final LockedFile locked;
+        private int count;
+        private boolean evicting;
+
+        Use(LockedFile locked) {
+            this.locked = locked;
+        }
+    }
+}
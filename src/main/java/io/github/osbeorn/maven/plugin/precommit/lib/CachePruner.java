@@ -0,0 +1,236 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evicts the least recently used pre-commit versions from the cache and the install directory once there are more
+ * versions or more bytes than allowed. Versions are tracked in a {@link CacheIndex} per directory. A version that a
+ * build uses, or whose files a concurrent build is writing, is never evicted, see {@link CacheLock}.
+ */
+public class CachePruner {
+    static final String INDEX_FILE_NAME = "cache-index.properties";
+    static final long PRUNE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Logger logger;
+    private final List<File> indexFiles;
+    private long maxSize;
+    private int maxVersions;
+
+    public CachePruner(File... indexFiles) {
+        logger = LoggerFactory.getLogger(getClass());
+        this.indexFiles = new ArrayList<>();
+        for (File indexFile : indexFiles) {
+            if (indexFile != null) {
+                this.indexFiles.add(indexFile);
+            }
+        }
+    }
+
+    /**
+     * Maximum number of bytes kept per directory, or 0 for no limit.
+     */
+    public CachePruner setMaxSize(long maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        return this;
+    }
+
+    /**
+     * Maximum number of versions kept per directory, or 0 for no limit.
+     */
+    public CachePruner setMaxVersions(int maxVersions) {
+        this.maxVersions = Math.max(0, maxVersions);
+        return this;
+    }
+
+    /**
+     * Parses a size in bytes with an optional {@code K}, {@code M} or {@code G} suffix.
+     */
+    public static long parseSize(String size) {
+        if (size == null || size.trim().isEmpty()) {
+            return 0;
+        }
+
+        String value = size.trim().toUpperCase(Locale.ROOT);
+        if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long unit = 1;
+        if (value.endsWith("K")) {
+            unit = FileUtils.ONE_KB;
+        } else if (value.endsWith("M")) {
+            unit = FileUtils.ONE_MB;
+        } else if (value.endsWith("G")) {
+            unit = FileUtils.ONE_GB;
+        }
+        if (unit != 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+
+        try {
+            return Long.parseLong(value.trim()) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size " + size, e);
+        }
+    }
+
+    /**
+     * Prunes all directories now.
+     */
+    public void prune() throws InstallationException {
+        for (File indexFile : indexFiles) {
+            try (CacheLock ignored = CacheLock.acquire(indexFile)) {
+                CacheIndex index = CacheIndex.read(indexFile);
+                prune(index, Collections.emptySet());
+                index.write();
+            } catch (IOException e) {
+                throw new InstallationException("Could not prune the cache recorded in " + indexFile, e);
+            }
+        }
+    }
+
+    /**
+     * Records that the version {@code key} with its {@code paths} was used, and prunes the directory if a new
+     * version was added or it was not pruned for a while. The index is only rewritten for versions that were not
+     * used recently, which keeps this cheap on builds that change nothing. Failures are logged, as the cache works
+     * without its index.
+     */
+    void touch(File indexFile, String key, File... paths) {
+        if (indexFile == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        CacheIndex current = CacheIndex.read(indexFile);
+        if (now - current.getLastUsed(key) < TOUCH_INTERVAL_MILLIS
+                && current.getPaths(key).containsAll(absolutePaths(paths))) {
+            return;
+        }
+
+        try (CacheLock ignored = CacheLock.acquire(indexFile)) {
+            CacheIndex index = CacheIndex.read(indexFile);
+            boolean added = index.touch(key, now, paths);
+            if (added || now - index.getLastPruned() >= PRUNE_INTERVAL_MILLIS) {
+                prune(index, Collections.singleton(key));
+            }
+            index.write();
+        } catch (IOException e) {
+            logger.warn("Could not record the use of {} in {}.", key, indexFile, e);
+        }
+    }
+
+    private void prune(CacheIndex index, Set<String> protectedKeys) {
+        index.setLastPruned(System.currentTimeMillis());
+
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        long totalSize = 0;
+        for (String key : index.getKeys()) {
+            long size = 0;
+            boolean exists = false;
+            for (String path : index.getPaths(key)) {
+                File file = new File(path);
+                if (file.exists()) {
+                    exists = true;
+                    size += FileUtils.sizeOf(file);
+                }
+            }
+
+            if (exists || protectedKeys.contains(key)) {
+                sizes.put(key, size);
+                totalSize += size;
+            } else {
+                // removed by someone else
+                index.remove(key);
+            }
+        }
+
+        int versions = sizes.size();
+        for (Map.Entry<String, Long> entry : sizes.entrySet()) {
+            boolean tooMany = maxVersions > 0 && versions > maxVersions;
+            boolean tooLarge = maxSize > 0 && totalSize > maxSize;
+            if (!tooMany && !tooLarge) {
+                break;
+            }
+            if (protectedKeys.contains(entry.getKey())) {
+                continue;
+            }
+
+            if (evict(index, entry.getKey())) {
+                index.remove(entry.getKey());
+                versions--;
+                totalSize -= entry.getValue();
+            }
+        }
+
+        if ((maxVersions > 0 && versions > maxVersions) || (maxSize > 0 && totalSize > maxSize)) {
+            logger.info("{} still holds {} versions in {} bytes, the remaining versions are in use.",
+                    index.getFile().getParent(), versions, totalSize);
+        }
+    }
+
+    /**
+     * Deletes the files of an entry with their lock files, unless a build uses or writes any of them.
+     */
+    private boolean evict(CacheIndex index, String key) {
+        List<File> files = new ArrayList<>();
+        for (String path : index.getPaths(key)) {
+            files.add(new File(path));
+        }
+
+        List<CacheLock> locks = new ArrayList<>();
+        try {
+            for (File file : files) {
+                CacheLock lock = CacheLock.tryAcquire(file);
+                if (lock == null) {
+                    logger.debug("{} is being written, not evicting {}.", file, key);
+                    return false;
+                }
+                locks.add(lock);
+
+                CacheLock use = CacheLock.tryAcquireUnused(file);
+                if (use == null) {
+                    logger.debug("{} is in use, not evicting {}.", file, key);
+                    return false;
+                }
+                locks.add(use);
+            }
+
+            logger.info("Evicting pre-commit {} from {}.", key, index.getFile().getParent());
+            for (File file : files) {
+                FileUtils.deleteQuietly(file);
+                FileUtils.deleteQuietly(Checksums.sidecarFile(file));
+                FileUtils.deleteQuietly(new File(file.getPath() + DefaultFileDownloader.PART_EXTENSION));
+                FileUtils.deleteQuietly(new File(file.getPath() + DefaultFileDownloader.VALIDATOR_EXTENSION));
+                FileUtils.deleteQuietly(CacheLock.lockFile(file));
+            }
+            return true;
+        } catch (IOException e) {
+            logger.warn("Could not evict {}.", key, e);
+            return false;
+        } finally {
+            CacheLock.releaseAll(locks);
+        }
+    }
+
+    private static Set<String> absolutePaths(File... paths) {
+        Set<String> absolutePaths = new HashSet<>();
+        for (File path : paths) {
+            absolutePaths.add(path.getAbsolutePath());
+        }
+        return absolutePaths;
+    }
+}
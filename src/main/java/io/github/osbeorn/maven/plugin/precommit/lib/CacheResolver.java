@@ -1,7 +1,31 @@
 package io.github.osbeorn.maven.plugin.precommit.lib;
 
 import java.io.File;
+import java.io.IOException;
 
 public interface CacheResolver {
   File resolve(CacheDescriptor cacheDescriptor);
+
+  /**
+   * Locks the resolved cache entry against concurrent modification by other threads and processes. The lock is
+   * released by closing it.
+   */
+  default CacheLock lock(CacheDescriptor cacheDescriptor) throws IOException {
+    return CacheLock.acquire(resolve(cacheDescriptor));
+  }
+
+  /**
+   * Fetches the cache entry from remote repositories into the cache. Returns the fetched file, or {@code null} if
+   * the resolver does not fetch entries or no repository provides it.
+   */
+  default File fetch(CacheDescriptor cacheDescriptor) {
+    return null;
+  }
+
+  /**
+   * Returns the file recording which cache entries the plugin uses, or {@code null} if entries are never evicted.
+   */
+  default File getIndexFile() {
+    return null;
+  }
 }
\ No newline at end of file
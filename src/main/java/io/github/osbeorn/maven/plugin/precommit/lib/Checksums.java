@@ -0,0 +1,85 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers, including the {@code .sha256} sidecar files stored next to verified artifacts, similar to the
+ * {@code .sha1} files Maven keeps in the local repository.
+ */
+final class Checksums {
+    static final String SIDECAR_EXTENSION = ".sha256";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Checksums() {
+    }
+
+    static String sha256(File file) throws IOException {
+        return toHex(digest(file));
+    }
+
+    static byte[] digest(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        return BaseEncoding.base16().lowerCase().encode(bytes);
+    }
+
+    static File sidecarFile(File file) {
+        return new File(file.getPath() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * Returns the digest recorded next to {@code file}, or {@code null} if there is none.
+     */
+    static String readSidecar(File file) {
+        File sidecar = sidecarFile(file);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+
+        try {
+            String[] content = FileUtils.readFileToString(sidecar, StandardCharsets.US_ASCII).trim().split("\\s+");
+            return isSha256(content[0]) ? content[0].toLowerCase() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static void writeSidecar(File file, String sha256) throws IOException {
+        FileUtils.writeStringToFile(sidecarFile(file), sha256, StandardCharsets.US_ASCII);
+    }
+
+    static boolean isSha256(String value) {
+        return value != null && value.matches("[0-9a-fA-F]{64}");
+    }
+}
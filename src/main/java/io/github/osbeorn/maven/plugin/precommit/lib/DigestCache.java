@@ -0,0 +1,108 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Remembers the SHA-256 digests of files, keyed by their path, size, modification time and file key, so that a
+ * file is only read again once it has changed. The memo is persisted so it is reused across builds.
+ */
+final class DigestCache {
+    static final String FILE_NAME = "digests.properties";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DigestCache.class);
+    private static final String SEPARATOR = "|";
+
+    private final File file;
+    private Properties digests;
+
+    DigestCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the SHA-256 digest of {@code target}, hashing it only if it changed since it was last hashed.
+     */
+    synchronized String sha256(File target) throws IOException {
+        String key = target.getAbsolutePath();
+        String metadata = metadata(target);
+
+        String memo = getDigests().getProperty(key);
+        if (memo != null && memo.startsWith(metadata + SEPARATOR)) {
+            return memo.substring(metadata.length() + SEPARATOR.length());
+        }
+
+        String sha256 = Checksums.sha256(target);
+        getDigests().setProperty(key, metadata + SEPARATOR + sha256);
+        save();
+        return sha256;
+    }
+
+    /**
+     * Records the digest of {@code target}, which the caller computed while writing it.
+     */
+    synchronized void remember(File target, String sha256) throws IOException {
+        getDigests().setProperty(target.getAbsolutePath(), metadata(target) + SEPARATOR + sha256);
+        save();
+    }
+
+    /**
+     * Compares the content of two files by size and digest.
+     */
+    boolean equal(File first, File second) throws IOException {
+        if (first.length() != second.length()) {
+            return false;
+        }
+        return sha256(first).equals(sha256(second));
+    }
+
+    private static String metadata(File target) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(target.toPath(), BasicFileAttributes.class);
+        return attributes.size() + SEPARATOR + attributes.lastModifiedTime().toMillis() + SEPARATOR + attributes.fileKey();
+    }
+
+    private Properties getDigests() {
+        if (digests == null) {
+            digests = new Properties();
+            if (file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    digests.load(in);
+                } catch (IOException | IllegalArgumentException e) {
+                    LOGGER.debug("Could not read the digest cache {}.", file, e);
+                    digests.clear();
+                }
+            }
+        }
+        return digests;
+    }
+
+    private void save() {
+        try {
+            file.getParentFile().mkdirs();
+            // unique, as concurrent builds may share the install directory
+            File temporary = new File(file.getPath() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                try (OutputStream out = new FileOutputStream(temporary)) {
+                    digests.store(out, "pre-commit-maven-plugin file digests");
+                }
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary.toPath());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not write the digest cache {}.", file, e);
+        }
+    }
+}
@@ -28,4 +28,9 @@ public class DirectoryCacheResolver implements CacheResolver {
 
         return new File(cacheDirectory, filename.toString());
     }
+
+    @Override
+    public File getIndexFile() {
+        return new File(cacheDirectory, CachePruner.INDEX_FILE_NAME);
+    }
 }
\ No newline at end of file
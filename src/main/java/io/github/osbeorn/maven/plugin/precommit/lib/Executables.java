@@ -0,0 +1,61 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import java.io.File;
+
+/**
+ * Resolves executables against the {@code PATH} without spawning a process.
+ */
+final class Executables {
+
+    private static final String[] WINDOWS_EXTENSIONS = new String[]{"", ".exe", ".bat", ".cmd"};
+    private static final String[] DEFAULT_EXTENSIONS = new String[]{""};
+
+    private Executables() {
+    }
+
+    /**
+     * Returns the absolute path of the first executable called {@code name} on the {@code PATH}, or {@code null} if
+     * none exists. Names containing a path separator are resolved as-is.
+     */
+    static File which(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+
+        String[] extensions = isWindows() ? WINDOWS_EXTENSIONS : DEFAULT_EXTENSIONS;
+
+        if (name.contains("/") || name.contains(File.separator)) {
+            return findExecutable(new File(name), extensions);
+        }
+
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+
+        for (String directory : path.split(File.pathSeparator)) {
+            if (directory.isEmpty()) {
+                continue;
+            }
+            File executable = findExecutable(new File(directory, name), extensions);
+            if (executable != null) {
+                return executable;
+            }
+        }
+        return null;
+    }
+
+    private static File findExecutable(File base, String[] extensions) {
+        for (String extension : extensions) {
+            File candidate = new File(base.getPath() + extension);
+            if (candidate.isFile() && candidate.canExecute()) {
+                return candidate.getAbsoluteFile();
+            }
+        }
+        return null;
+    }
+
+    static boolean isWindows() {
+        return System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    }
+}
@@ -2,19 +2,40 @@ package io.github.osbeorn.maven.plugin.precommit.lib;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.http.client.CredentialsProvider;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 final class DownloadException extends Exception {
     public DownloadException(String message) {
@@ -27,52 +48,528 @@ final class DownloadException extends Exception {
 }
 
 interface FileDownloader {
-    void download(String downloadUrl, String destination) throws DownloadException;
+    /**
+     * Downloads {@code downloadUrl} into {@code destination} and all {@code copies} in a single pass and returns the
+     * SHA-256 digest of the content. If {@code expectedSha256} is given and does not match, nothing is written.
+     */
+    String download(String downloadUrl, String destination, String expectedSha256, File... copies)
+            throws DownloadException;
+
+    String downloadText(String downloadUrl) throws DownloadException;
+
+    /**
+     * Checks that {@code downloadUrl} can be downloaded, giving up after {@code timeoutMillis}.
+     */
+    void probe(String downloadUrl, int timeoutMillis) throws DownloadException;
 }
 
+/**
+ * Downloads files over a pooled HTTP client shared by all downloads. Transfers go to a {@code .part} file that is
+ * resumed with a range request after an interruption and moved into place once complete. The validator of the
+ * response the part file was started from, its {@code ETag} or {@code Last-Modified} value, is kept next to it and
+ * sent as {@code If-Range}, so that a file that changed on the server is downloaded again instead of being appended
+ * to the old part. Large files can be split into ranges that are downloaded over several connections at once.
+ * <p>
+ * Bytes are digested and written to all copies as they arrive, so the content does not need to be read back for
+ * verification. Only bytes that did not arrive in order, from a resumed or ranged download, are read back once.
+ */
 final class DefaultFileDownloader implements FileDownloader {
+    static final String PART_EXTENSION = ".part";
+    static final String VALIDATOR_EXTENSION = PART_EXTENSION + ".validator";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileDownloader.class);
+    private static final long MIN_RANGE_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int connections;
+
+    DefaultFileDownloader() {
+        this(1);
+    }
+
+    DefaultFileDownloader(int connections) {
+        this.connections = Math.max(1, connections);
+    }
 
     @Override
-    public void download(String downloadUrl, String destination) throws DownloadException {
-        // force tls to 1.2 since GitHub removed weak cryptographic standards
-        // https://blog.github.com/2018-02-02-weak-cryptographic-standards-removal-notice/
-        System.setProperty("https.protocols", "TLSv1.2");
-        String fixedDownloadUrl = downloadUrl;
+    public String download(String downloadUrl, String destination, String expectedSha256, File... copies)
+            throws DownloadException {
+        String fixedDownloadUrl = FilenameUtils.separatorsToUnix(downloadUrl);
+
+        List<File> files = new ArrayList<>();
+        files.add(new File(destination).getAbsoluteFile());
+        for (File copy : copies) {
+            files.add(copy.getAbsoluteFile());
+        }
+
+        List<File> partFiles = new ArrayList<>();
+        for (File file : files) {
+            file.getParentFile().mkdirs();
+            partFiles.add(new File(file.getPath() + PART_EXTENSION));
+        }
+
+        File validatorFile = new File(files.get(0).getPath() + VALIDATOR_EXTENSION);
+        boolean resume = partFiles.get(0).exists();
+        boolean committed = false;
 
         try {
-            fixedDownloadUrl = FilenameUtils.separatorsToUnix(fixedDownloadUrl);
             URI downloadURI = new URI(fixedDownloadUrl);
+            String sha256;
+
+            try (DigestingSink sink = new DigestingSink(partFiles)) {
+                if ("file".equalsIgnoreCase(downloadURI.getScheme())) {
+                    try (FileChannel source = FileChannel.open(new File(downloadURI).toPath())) {
+                        sink.reset();
+                        Files.deleteIfExists(validatorFile.toPath());
+                        sink.write(source);
+                    }
+                } else if (connections == 1 || resume || !downloadRanges(fixedDownloadUrl, sink)) {
+                    downloadResumable(fixedDownloadUrl, sink, validatorFile);
+                }
+                sha256 = sink.getSha256();
+            }
+
+            if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+                partFiles.get(0).delete();
+                validatorFile.delete();
+                throw new DownloadException("Checksum of " + fixedDownloadUrl + " doesn't match, expected "
+                        + expectedSha256 + " but got " + sha256 + ".");
+            }
+
+            // the destination is moved last so that an interrupted commit is detected by the next build
+            for (int i = files.size() - 1; i >= 0; i--) {
+                Files.move(partFiles.get(i).toPath(), files.get(i).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            committed = true;
+            Files.deleteIfExists(validatorFile.toPath());
+            return sha256;
+        } catch (IOException | URISyntaxException e) {
+            throw new DownloadException("Could not download " + fixedDownloadUrl, e);
+        } finally {
+            if (!committed) {
+                deleteCopies(partFiles);
+            }
+        }
+    }
 
+    /**
+     * Deletes the parts of the copies. The part of the destination is kept so the download can be resumed, unless
+     * it was complete and failed verification.
+     */
+    private static void deleteCopies(List<File> partFiles) {
+        for (File partFile : partFiles.subList(1, partFiles.size())) {
+            partFile.delete();
+        }
+    }
+
+    @Override
+    public String downloadText(String downloadUrl) throws DownloadException {
+        String fixedDownloadUrl = FilenameUtils.separatorsToUnix(downloadUrl);
+
+        try {
+            URI downloadURI = new URI(fixedDownloadUrl);
             if ("file".equalsIgnoreCase(downloadURI.getScheme())) {
-                FileUtils.copyFile(new File(downloadURI), new File(destination));
-            } else {
-                CloseableHttpResponse response = execute(fixedDownloadUrl);
+                return FileUtils.readFileToString(new File(downloadURI), StandardCharsets.UTF_8);
+            }
+
+            try (CloseableHttpResponse response = HttpClientHolder.CLIENT.execute(new HttpGet(fixedDownloadUrl))) {
                 int statusCode = response.getStatusLine().getStatusCode();
 
-                if (statusCode != 200) {
+                if (statusCode != HttpStatus.SC_OK) {
+                    EntityUtils.consumeQuietly(response.getEntity());
                     throw new DownloadException("Got error code " + statusCode + " from the server.");
                 }
 
-                new File(FilenameUtils.getFullPathNoEndSeparator(destination)).mkdirs();
-                ReadableByteChannel rbc = Channels.newChannel(response.getEntity().getContent());
-                FileOutputStream fos = new FileOutputStream(destination);
-                fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-                fos.close();
+                return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
             }
         } catch (IOException | URISyntaxException e) {
             throw new DownloadException("Could not download " + fixedDownloadUrl, e);
         }
     }
 
-    private CloseableHttpResponse execute(String requestUrl) throws IOException {
-        return buildHttpClient(null).execute(new HttpGet(requestUrl));
+    @Override
+    public void probe(String downloadUrl, int timeoutMillis) throws DownloadException {
+        String fixedDownloadUrl = FilenameUtils.separatorsToUnix(downloadUrl);
+
+        try {
+            URI downloadURI = new URI(fixedDownloadUrl);
+            if ("file".equalsIgnoreCase(downloadURI.getScheme())) {
+                if (!new File(downloadURI).isFile()) {
+                    throw new DownloadException(fixedDownloadUrl + " does not exist.");
+                }
+                return;
+            }
+
+            HttpHead request = new HttpHead(fixedDownloadUrl);
+            request.setConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(timeoutMillis)
+                    .setConnectTimeout(timeoutMillis)
+                    .setSocketTimeout(timeoutMillis)
+                    .build());
+
+            try (CloseableHttpResponse response = HttpClientHolder.CLIENT.execute(request)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != HttpStatus.SC_OK) {
+                    throw new DownloadException("Got error code " + statusCode + " from the server.");
+                }
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            throw new DownloadException("Could not reach " + fixedDownloadUrl, e);
+        }
     }
 
-    private CloseableHttpClient buildHttpClient(CredentialsProvider credentialsProvider) {
-        return HttpClients.custom()
-                .disableContentCompression()
-                .useSystemProperties()
-                .setDefaultCredentialsProvider(credentialsProvider)
-                .build();
+    /**
+     * Downloads into the sink, continuing after the current length of its part file if the server supports range
+     * requests and the file did not change since the part file was started. A part file without a validator is
+     * downloaded again from the start, as there is no way to tell whether it is still a prefix of the file.
+     */
+    private void downloadResumable(String downloadUrl, DigestingSink sink, File validatorFile)
+            throws IOException, DownloadException {
+        long offset = sink.size();
+        String validator = offset > 0 ? readValidator(validatorFile) : null;
+        if (offset > 0 && validator == null) {
+            LOGGER.debug("Cannot tell whether {} changed since it was partially downloaded, starting over.",
+                    downloadUrl);
+            sink.reset();
+            offset = 0;
+        }
+
+        HttpGet request = new HttpGet(downloadUrl);
+        if (offset > 0) {
+            request.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+            request.setHeader(HttpHeaders.IF_RANGE, validator);
+        }
+
+        try (CloseableHttpResponse response = HttpClientHolder.CLIENT.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (offset > 0 && (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE
+                    || (statusCode == HttpStatus.SC_PARTIAL_CONTENT && rangeStart(response) != offset))) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                LOGGER.debug("Cannot resume {} at byte {}, starting over.", downloadUrl, offset);
+                sink.reset();
+                Files.deleteIfExists(validatorFile.toPath());
+                downloadResumable(downloadUrl, sink, validatorFile);
+                return;
+            }
+
+            if (statusCode == HttpStatus.SC_PARTIAL_CONTENT && offset > 0) {
+                LOGGER.info("Resuming download of {} at byte {}.", downloadUrl, offset);
+                sink.absorb(offset);
+            } else if (statusCode == HttpStatus.SC_OK) {
+                if (offset > 0) {
+                    LOGGER.debug("{} changed or cannot be resumed, starting over.", downloadUrl);
+                }
+                sink.reset();
+                writeValidator(validatorFile, validator(response));
+            } else {
+                EntityUtils.consumeQuietly(response.getEntity());
+                throw new DownloadException("Got error code " + statusCode + " from the server.");
+            }
+
+            try (InputStream in = response.getEntity().getContent();
+                 ReadableByteChannel source = Channels.newChannel(in)) {
+                sink.write(source);
+            }
+        }
+    }
+
+    /**
+     * Splits the download into one range per connection and downloads the ranges concurrently into the part file
+     * of the sink, then feeds the result through the sink. Returns {@code false}, leaving the part file empty, if
+     * the server does not support it or a range fails.
+     */
+    private boolean downloadRanges(String downloadUrl, DigestingSink sink) throws IOException {
+        long length;
+        String validator;
+        try (CloseableHttpResponse response = HttpClientHolder.CLIENT.execute(new HttpHead(downloadUrl))) {
+            Header acceptRanges = response.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+            Header contentLength = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || acceptRanges == null
+                    || !"bytes".equalsIgnoreCase(acceptRanges.getValue()) || contentLength == null) {
+                return false;
+            }
+            length = Long.parseLong(contentLength.getValue());
+            validator = validator(response);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        int ranges = (int) Math.min(connections, length / MIN_RANGE_SIZE);
+        if (ranges < 2) {
+            return false;
+        }
+
+        LOGGER.debug("Downloading {} in {} ranges.", downloadUrl, ranges);
+
+        ExecutorService executor = Executors.newFixedThreadPool(ranges, runnable -> {
+            Thread thread = new Thread(runnable, "pre-commit-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            long rangeSize = (length + ranges - 1) / ranges;
+            List<Future<Void>> futures = new ArrayList<>();
+            for (long start = 0; start < length; start += rangeSize) {
+                long first = start;
+                long last = Math.min(start + rangeSize, length) - 1;
+                futures.add(executor.submit(() -> {
+                    downloadRange(downloadUrl, validator, sink.getPart(), first, last);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+            sink.absorb(length);
+            return true;
+        } catch (ExecutionException e) {
+            LOGGER.debug("Downloading {} in ranges failed, falling back to a single connection.", downloadUrl,
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + downloadUrl, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        sink.reset();
+        return false;
+    }
+
+    /**
+     * Downloads one range into {@code channel}. If the file changed since {@code validator} was seen, the server
+     * answers with the whole file instead, which fails the range.
+     */
+    private void downloadRange(String downloadUrl, String validator, FileChannel channel, long first, long last)
+            throws IOException, DownloadException {
+        HttpGet request = new HttpGet(downloadUrl);
+        request.setHeader(HttpHeaders.RANGE, "bytes=" + first + "-" + last);
+        if (validator != null) {
+            request.setHeader(HttpHeaders.IF_RANGE, validator);
+        }
+
+        try (CloseableHttpResponse response = HttpClientHolder.CLIENT.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_PARTIAL_CONTENT || rangeStart(response) != first) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                throw new DownloadException("Got unexpected response " + statusCode + " for range " + first + "-" + last);
+            }
+
+            long position = first;
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            try (InputStream in = response.getEntity().getContent();
+                 ReadableByteChannel source = Channels.newChannel(in)) {
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    buffer.clear();
+                }
+            }
+
+            if (position != last + 1) {
+                throw new DownloadException("Range " + first + "-" + last + " ended at " + position);
+            }
+        }
+    }
+
+    /**
+     * Returns the first byte position of a {@code Content-Range} header, or {@code -1} if there is none.
+     */
+    private static long rangeStart(CloseableHttpResponse response) {
+        Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (contentRange == null) {
+            return -1;
+        }
+
+        try {
+            String value = contentRange.getValue().trim();
+            return Long.parseLong(value.substring(value.indexOf(' ') + 1, value.indexOf('-')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the validator to send as {@code If-Range}: the strong {@code ETag} of the response, or its
+     * {@code Last-Modified} date if it has none. Returns {@code null} if the response has neither.
+     */
+    private static String validator(CloseableHttpResponse response) {
+        Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            return etag.getValue();
+        }
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        return lastModified != null ? lastModified.getValue() : null;
+    }
+
+    private static String readValidator(File validatorFile) {
+        try {
+            String validator = validatorFile.isFile()
+                    ? FileUtils.readFileToString(validatorFile, StandardCharsets.UTF_8).trim()
+                    : "";
+            return validator.isEmpty() ? null : validator;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeValidator(File validatorFile, String validator) throws IOException {
+        if (validator == null) {
+            Files.deleteIfExists(validatorFile.toPath());
+        } else {
+            FileUtils.writeStringToFile(validatorFile, validator, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes downloaded bytes to a part file and the parts of all copies while computing their SHA-256 digest.
+     */
+    private static final class DigestingSink implements Closeable {
+        private final FileChannel part;
+        private final List<FileChannel> copies = new ArrayList<>();
+        private final MessageDigest digest = Checksums.newSha256();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private long position;
+
+        DigestingSink(List<File> partFiles) throws IOException {
+            part = FileChannel.open(partFiles.get(0).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                for (File partFile : partFiles.subList(1, partFiles.size())) {
+                    copies.add(FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        FileChannel getPart() {
+            return part;
+        }
+
+        long size() throws IOException {
+            return part.size();
+        }
+
+        void reset() throws IOException {
+            part.truncate(0);
+            for (FileChannel copy : copies) {
+                copy.truncate(0);
+            }
+            digest.reset();
+            position = 0;
+        }
+
+        /**
+         * Feeds the first {@code length} bytes already present in the part file through the digest and copies.
+         */
+        void absorb(long length) throws IOException {
+            digest.reset();
+            position = 0;
+            while (position < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                if (part.read(buffer, position) < 0) {
+                    throw new IOException("Unexpected end of " + part + " at " + position);
+                }
+                buffer.flip();
+                update(false);
+            }
+            for (FileChannel copy : copies) {
+                copy.truncate(length);
+            }
+        }
+
+        /**
+         * Appends everything from {@code source} at the current position.
+         */
+        void write(ReadableByteChannel source) throws IOException {
+            buffer.clear();
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                update(true);
+                buffer.clear();
+            }
+            part.truncate(position);
+        }
+
+        private void update(boolean writePart) throws IOException {
+            int length = buffer.remaining();
+
+            ByteBuffer view = buffer.duplicate();
+            digest.update(view);
+
+            for (FileChannel copy : copies) {
+                writeFully(copy, buffer.duplicate(), position);
+            }
+            if (writePart) {
+                writeFully(part, buffer.duplicate(), position);
+            }
+            position += length;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer source, long position) throws IOException {
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+        }
+
+        String getSha256() {
+            return Checksums.toHex(digest.digest());
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (FileChannel channel : copies) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            part.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Lazily builds the HTTP client shared by all downloads of this JVM, so connections are reused.
+     */
+    private static final class HttpClientHolder {
+        private static final int MAX_CONNECTIONS = 16;
+        private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+        private static final int SOCKET_TIMEOUT_MILLIS = 60_000;
+
+        static final CloseableHttpClient CLIENT = buildHttpClient();
+
+        private static CloseableHttpClient buildHttpClient() {
+            // force tls to 1.2 since GitHub removed weak cryptographic standards
+            // https://blog.github.com/2018-02-02-weak-cryptographic-standards-removal-notice/
+            System.setProperty("https.protocols", "TLSv1.2");
+
+            return HttpClients.custom()
+                    .disableContentCompression()
+                    .useSystemProperties()
+                    .setMaxConnTotal(MAX_CONNECTIONS)
+                    .setMaxConnPerRoute(MAX_CONNECTIONS)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                            .setSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                            .build())
+                    .build();
+        }
     }
 }
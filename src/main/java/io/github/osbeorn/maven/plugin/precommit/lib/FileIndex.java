@@ -0,0 +1,200 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Index of the files that passed the hooks, mapping each path to the metadata and content hash it had at the time
+ * and the fingerprint of the configuration it passed with.
+ * <p>
+ * The index is a file of fixed size records sorted by path hash. It is read into memory with a single read and
+ * searched in place, without decoding its records. It is not memory-mapped, as a mapped file cannot be replaced on
+ * Windows until the mapping is garbage collected.
+ */
+final class FileIndex {
+    static final String FILE_NAME = "run-index.bin";
+    static final int CONTENT_HASH_SIZE = 16;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileIndex.class);
+    private static final int MAGIC = 0x50434958;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = 8 + 8 + 8 + CONTENT_HASH_SIZE + 8;
+
+    private final ByteBuffer records;
+    private final int count;
+
+    private FileIndex(ByteBuffer records, int count) {
+        this.records = records;
+        this.count = count;
+    }
+
+    static final class Entry {
+        private final long pathHash;
+        private final long size;
+        private final long modified;
+        private final byte[] contentHash;
+        private final long configFingerprint;
+
+        Entry(long pathHash, long size, long modified, byte[] contentHash, long configFingerprint) {
+            this.pathHash = pathHash;
+            this.size = size;
+            this.modified = modified;
+            this.contentHash = contentHash;
+            this.configFingerprint = configFingerprint;
+        }
+
+        long getPathHash() {
+            return pathHash;
+        }
+
+        boolean hasMetadata(long size, long modified) {
+            return this.size == size && this.modified == modified;
+        }
+
+        boolean hasContent(byte[] contentHash) {
+            return Arrays.equals(this.contentHash, contentHash);
+        }
+
+        long getConfigFingerprint() {
+            return configFingerprint;
+        }
+    }
+
+    static long pathHash(String path) {
+        return Hashing.murmur3_128().hashString(path, StandardCharsets.UTF_8).asLong();
+    }
+
+    /**
+     * Truncates a SHA-256 digest to the size stored in the index.
+     */
+    static byte[] contentHash(byte[] sha256) {
+        return Arrays.copyOf(sha256, CONTENT_HASH_SIZE);
+    }
+
+    /**
+     * Reads the index file, returning an empty index if it is missing or invalid.
+     */
+    static FileIndex load(File file) {
+        if (!file.isFile()) {
+            return new FileIndex(ByteBuffer.allocate(0), 0);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File index " + file + " is too large");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() >= HEADER_SIZE && buffer.getInt(0) == MAGIC
+                    && buffer.getInt(4) == FORMAT_VERSION) {
+                int count = buffer.getInt(8);
+                if ((long) count * RECORD_SIZE == buffer.remaining() - HEADER_SIZE) {
+                    buffer.position(HEADER_SIZE);
+                    return new FileIndex(buffer.slice(), count);
+                }
+            }
+            LOGGER.debug("Ignoring invalid file index {}.", file);
+        } catch (IOException e) {
+            LOGGER.debug("Could not read the file index {}.", file, e);
+        }
+        return new FileIndex(ByteBuffer.allocate(0), 0);
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Binary searches the entry of a path hash, returning {@code null} if there is none.
+     */
+    Entry find(long pathHash) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleHash = records.getLong(middle * RECORD_SIZE);
+            if (middleHash < pathHash) {
+                low = middle + 1;
+            } else if (middleHash > pathHash) {
+                high = middle - 1;
+            } else {
+                return read(middle);
+            }
+        }
+        return null;
+    }
+
+    private Entry read(int index) {
+        int offset = index * RECORD_SIZE;
+        byte[] contentHash = new byte[CONTENT_HASH_SIZE];
+        for (int i = 0; i < CONTENT_HASH_SIZE; i++) {
+            contentHash[i] = records.get(offset + 24 + i);
+        }
+        return new Entry(
+                records.getLong(offset),
+                records.getLong(offset + 8),
+                records.getLong(offset + 16),
+                contentHash,
+                records.getLong(offset + 24 + CONTENT_HASH_SIZE)
+        );
+    }
+
+    /**
+     * Writes a new index containing the entries of this index whose path hash is in {@code retained}, replaced or
+     * complemented by {@code updates}. If {@code retained} is {@code null}, all entries are retained.
+     */
+    void write(File file, Collection<Long> retained, Collection<Entry> updates) throws IOException {
+        Map<Long, Entry> entries = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            Entry entry = read(i);
+            if (retained == null || retained.contains(entry.pathHash)) {
+                entries.put(entry.pathHash, entry);
+            }
+        }
+        for (Entry entry : updates) {
+            entries.put(entry.pathHash, entry);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entries.size() * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(entries.size());
+        for (Entry entry : entries.values()) {
+            buffer.putLong(entry.pathHash)
+                    .putLong(entry.size)
+                    .putLong(entry.modified)
+                    .put(entry.contentHash)
+                    .putLong(entry.configFingerprint);
+        }
+        buffer.flip();
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locates the Git metadata of a working tree by inspecting the file system only.
+ */
+final class GitRepository {
+
+    private static final String GIT_DIR_PREFIX = "gitdir:";
+
+    private final File workTree;
+    private final File gitDirectory;
+    private final File commonDirectory;
+
+    private GitRepository(File workTree, File gitDirectory, File commonDirectory) {
+        this.workTree = workTree;
+        this.gitDirectory = gitDirectory;
+        this.commonDirectory = commonDirectory;
+    }
+
+    /**
+     * Finds the repository containing {@code directory}, or returns {@code null} if it is not inside a Git working
+     * tree.
+     */
+    static GitRepository find(File directory) throws IOException {
+        File current = directory.getAbsoluteFile();
+        while (current != null) {
+            File dotGit = new File(current, ".git");
+            if (dotGit.isDirectory()) {
+                return new GitRepository(current.getCanonicalFile(), dotGit, dotGit);
+            }
+            if (dotGit.isFile()) {
+                File gitDirectory = readGitDirFile(dotGit);
+                return new GitRepository(current.getCanonicalFile(), gitDirectory, readCommonDirectory(gitDirectory));
+            }
+            current = current.getParentFile();
+        }
+        return null;
+    }
+
+    /**
+     * Lists the files tracked in the index below {@code directory}, relative to it.
+     */
+    static List<String> listFiles(File directory) throws IOException {
+        Process process = new ProcessBuilder("git", "ls-files", "-z")
+                .directory(directory)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        process.getOutputStream().close();
+
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException("git ls-files failed with return code " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while listing files", e);
+        }
+
+        List<String> files = new ArrayList<>();
+        for (String file : output.split("\0")) {
+            if (!file.isEmpty()) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    File getWorkTree() {
+        return workTree;
+    }
+
+    File getGitDirectory() {
+        return gitDirectory;
+    }
+
+    /**
+     * Returns the directory Git runs the hooks from, which is {@code core.hooksPath} if it is set.
+     */
+    File getHooksDirectory() {
+        String hooksPath = getHooksPath();
+        if (hooksPath == null) {
+            return new File(commonDirectory, "hooks");
+        }
+
+        if (hooksPath.startsWith("~/")) {
+            return new File(System.getProperty("user.home"), hooksPath.substring(2));
+        }
+        File hooksDirectory = new File(hooksPath);
+        // relative paths are relative to where the hooks run, the root of the working tree
+        return hooksDirectory.isAbsolute() ? hooksDirectory : new File(workTree, hooksPath);
+    }
+
+    /**
+     * Returns {@code core.hooksPath} as set in the system, global, repository or worktree configuration, or
+     * {@code null} if it is not set. Includes are not followed.
+     */
+    String getHooksPath() {
+        List<File> configFiles = new ArrayList<>();
+        if (System.getenv("GIT_CONFIG_NOSYSTEM") == null) {
+            configFiles.add(new File("/etc/gitconfig"));
+        }
+        String globalConfig = System.getenv("GIT_CONFIG_GLOBAL");
+        if (globalConfig != null) {
+            configFiles.add(new File(globalConfig));
+        } else {
+            String configHome = System.getenv("XDG_CONFIG_HOME");
+            if (configHome == null || configHome.isEmpty()) {
+                configHome = System.getProperty("user.home") + "/.config";
+            }
+            configFiles.add(new File(configHome, "git/config"));
+            configFiles.add(new File(System.getProperty("user.home"), ".gitconfig"));
+        }
+        configFiles.add(new File(commonDirectory, "config"));
+        configFiles.add(new File(gitDirectory, "config.worktree"));
+
+        String hooksPath = null;
+        for (File configFile : configFiles) {
+            String value = readConfigValue(configFile, "core", "hookspath");
+            if (value != null) {
+                hooksPath = value;
+            }
+        }
+        return hooksPath == null || hooksPath.isEmpty() ? null : hooksPath;
+    }
+
+    /**
+     * Returns the last value of {@code key} in {@code section} of a Git configuration file, or {@code null} if it
+     * is not set there. Section and key names are compared case-insensitively, subsections are skipped.
+     */
+    private static String readConfigValue(File configFile, String section, String key) {
+        if (!configFile.isFile()) {
+            return null;
+        }
+
+        List<String> lines;
+        try {
+            lines = FileUtils.readLines(configFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+
+        String value = null;
+        boolean inSection = false;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("[")) {
+                int end = trimmed.indexOf(']');
+                inSection = end > 0 && trimmed.substring(1, end).trim().equalsIgnoreCase(section);
+                trimmed = end > 0 ? trimmed.substring(end + 1).trim() : "";
+            }
+            if (!inSection || trimmed.isEmpty()) {
+                continue;
+            }
+
+            int equals = trimmed.indexOf('=');
+            String name = (equals < 0 ? trimmed : trimmed.substring(0, equals)).trim();
+            if (name.equalsIgnoreCase(key)) {
+                value = equals < 0 ? "" : parseConfigValue(trimmed.substring(equals + 1));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Unquotes a configuration value and strips its comment.
+     */
+    private static String parseConfigValue(String raw) {
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\\' && i + 1 < raw.length()) {
+                char escaped = raw.charAt(++i);
+                value.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped);
+            } else if ((c == '#' || c == ';') && !quoted) {
+                break;
+            } else {
+                value.append(c);
+            }
+        }
+        return value.toString().trim();
+    }
+
+    private static File readGitDirFile(File dotGit) throws IOException {
+        String content = FileUtils.readFileToString(dotGit, StandardCharsets.UTF_8).trim();
+        if (!content.startsWith(GIT_DIR_PREFIX)) {
+            throw new IOException("Unexpected content in " + dotGit);
+        }
+        return resolve(dotGit.getParentFile(), content.substring(GIT_DIR_PREFIX.length()).trim());
+    }
+
+    private static File readCommonDirectory(File gitDirectory) throws IOException {
+        File commonDir = new File(gitDirectory, "commondir");
+        if (!commonDir.isFile()) {
+            return gitDirectory;
+        }
+        return resolve(gitDirectory, FileUtils.readFileToString(commonDir, StandardCharsets.UTF_8).trim());
+    }
+
+    private static File resolve(File base, String path) throws IOException {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(base, path);
+        }
+        return file.getCanonicalFile();
+    }
+}
@@ -0,0 +1,347 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs the directory pre-commit installs the hook environments into ({@code PRE_COMMIT_HOME}) into a zip archive
+ * and restores it, so that a fresh machine does not have to build the hook environments again. Zip entries do not
+ * carry POSIX attributes, therefore executable files and symbolic links are recorded in an attributes entry.
+ * <p>
+ * The directory is shared by all projects of a user, so only the environments of the repositories the
+ * configuration references are packed, together with a copy of pre-commit's database that lists only those.
+ */
+final class HookEnvironmentSnapshot {
+    static final String NAME = "pre-commit-hooks";
+    static final String EXTENSION = "zip";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HookEnvironmentSnapshot.class);
+    private static final String ATTRIBUTES_ENTRY = ".pre-commit-maven-plugin/attributes.properties";
+    private static final String EXECUTABLE = "executable";
+    private static final String SYMLINK_PREFIX = "symlink:";
+    private static final String DATABASE = "db.db";
+    private static final String LOCAL_REPOSITORY = "local";
+    private static final long SELECT_TIMEOUT_SECONDS = 60;
+    private static final Pattern REPO = Pattern.compile("^\\s*(?:-\\s*)?repo\\s*:\\s*(.+)$");
+    private static final Pattern REV = Pattern.compile("^\\s*(?:-\\s*)?rev\\s*:\\s*(.+)$");
+
+    /**
+     * Copies pre-commit's database, keeping only the repositories given as pairs of URL and revision, and prints
+     * the directories of the kept repositories. Repositories built with additional dependencies are recorded as
+     * {@code <url>:<dependencies>}, local repositories are kept with any revision.
+     */
+    private static final String SELECT_SCRIPT = String.join("\n",
+            "import shutil, sqlite3, sys",
+            "home_database, database = sys.argv[1], sys.argv[2]",
+            "wanted = list(zip(sys.argv[3::2], sys.argv[4::2]))",
+            "def referenced(repo, ref):",
+            "    for url, rev in wanted:",
+            "        if (repo == url or repo.startswith(url + ':')) and (ref == rev or url == '" + LOCAL_REPOSITORY + "'):",
+            "            return True",
+            "    return False",
+            "shutil.copyfile(home_database, database)",
+            "db = sqlite3.connect(database)",
+            "for repo, ref, path in db.execute('SELECT repo, ref, path FROM repos').fetchall():",
+            "    if referenced(repo, ref):",
+            "        print(path)",
+            "    else:",
+            "        db.execute('DELETE FROM repos WHERE repo = ? AND ref = ?', (repo, ref))",
+            "db.commit()",
+            "db.execute('VACUUM')",
+            "db.close()");
+
+    private HookEnvironmentSnapshot() {
+    }
+
+    /**
+     * Returns the directory pre-commit stores the hook environments in, resolved the same way pre-commit does.
+     */
+    static File getHomeDirectory() {
+        String home = System.getenv("PRE_COMMIT_HOME");
+        if (home != null && !home.isEmpty()) {
+            return new File(home);
+        }
+
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if (cacheHome == null || cacheHome.isEmpty()) {
+            cacheHome = System.getProperty("user.home") + "/.cache";
+        }
+        return new File(cacheHome, "pre-commit");
+    }
+
+    /**
+     * Returns the classifier identifying the snapshots that can be restored for the given configuration,
+     * interpreter, hook environment directory and the current platform. The environments embed the absolute paths
+     * of the directory and the interpreter, so a snapshot is only valid where both are the same.
+     */
+    static String getClassifier(String configHash, String interpreter, File home) {
+        String interpreterPath = interpreter;
+        File interpreterFile = Executables.which(interpreter);
+        if (interpreterFile != null) {
+            try {
+                interpreterPath = interpreterFile.toPath().toRealPath().toString();
+            } catch (IOException e) {
+                interpreterPath = interpreterFile.getPath();
+            }
+        }
+
+        MessageDigest digest = Checksums.newSha256();
+        for (String part : new String[]{configHash, interpreterPath, realPath(home), System.getProperty("os.name"),
+                System.getProperty("os.arch")}) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return Checksums.toHex(digest.digest()).substring(0, 16);
+    }
+
+    /**
+     * Returns the repositories referenced by a pre-commit configuration as pairs of URL and revision. Local
+     * repositories have no revision, {@code meta} hooks are skipped as they have no environment.
+     */
+    static List<String[]> readRepositories(File configFile) throws IOException {
+        List<String[]> repositories = new ArrayList<>();
+        String[] current = null;
+        for (String line : Files.readAllLines(configFile.toPath(), StandardCharsets.UTF_8)) {
+            Matcher repo = REPO.matcher(line);
+            Matcher rev = REV.matcher(line);
+            if (repo.matches()) {
+                current = new String[]{scalar(repo.group(1)), ""};
+                if (!"meta".equals(current[0])) {
+                    repositories.add(current);
+                }
+            } else if (rev.matches() && current != null) {
+                current[1] = scalar(rev.group(1));
+            }
+        }
+        return repositories;
+    }
+
+    /**
+     * Writes the environments of {@code repositories} in {@code directory}, and pre-commit's database listing only
+     * those, into {@code archive}, replacing it atomically. {@code python} is used to read the database.
+     */
+    static void pack(File directory, File archive, String python, List<String[]> repositories) throws IOException {
+        LOGGER.info("Packing the hook environments in {} into {}.", directory, archive);
+
+        archive.getParentFile().mkdirs();
+        Path root = directory.toPath().toRealPath();
+        Path temporary = archive.toPath().resolveSibling(archive.getName() + "." + UUID.randomUUID() + ".tmp");
+        Path database = archive.toPath().resolveSibling(archive.getName() + "." + UUID.randomUUID() + ".db");
+        Properties attributes = new Properties();
+
+        try {
+            List<Path> environments = selectEnvironments(root, database, python, repositories);
+            try (ZipOutputStream out = new ZipOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary.toFile())))) {
+                SimpleFileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        if (!dir.equals(root)) {
+                            out.putNextEntry(new ZipEntry(entryName(root, dir) + "/"));
+                            out.closeEntry();
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        String name = entryName(root, file);
+                        if (attrs.isSymbolicLink()) {
+                            attributes.setProperty(name, SYMLINK_PREFIX + Files.readSymbolicLink(file));
+                        } else if (attrs.isRegularFile()) {
+                            out.putNextEntry(new ZipEntry(name));
+                            Files.copy(file, out);
+                            out.closeEntry();
+                            if (Files.isExecutable(file)) {
+                                attributes.setProperty(name, EXECUTABLE);
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                };
+                for (Path environment : environments) {
+                    Files.walkFileTree(environment, visitor);
+                }
+
+                out.putNextEntry(new ZipEntry(DATABASE));
+                Files.copy(database, out);
+                out.closeEntry();
+
+                out.putNextEntry(new ZipEntry(ATTRIBUTES_ENTRY));
+                attributes.store(out, "pre-commit-maven-plugin hook environment attributes");
+                out.closeEntry();
+            }
+            Files.move(temporary, archive.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+            Files.deleteIfExists(database);
+        }
+    }
+
+    /**
+     * Copies pre-commit's database in {@code root} to {@code database}, keeping only {@code repositories}, and
+     * returns the directories of their environments.
+     */
+    private static List<Path> selectEnvironments(Path root, Path database, String python,
+                                                 List<String[]> repositories) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(python, "-c", SELECT_SCRIPT,
+                root.resolve(DATABASE).toString(), database.toString()));
+        for (String[] repository : repositories) {
+            command.add(repository[0]);
+            command.add(repository[1]);
+        }
+
+        ProcessRunner.ProcessResult result;
+        try {
+            result = ProcessRunner.run(new ProcessBuilder(command), ProcessRunner.DEFAULT_BUFFER_LINES,
+                    SELECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the database in " + root, e);
+        } catch (TimeoutException e) {
+            throw new IOException("Reading the database in " + root + " timed out", e);
+        }
+        if (result.getExitCode() != 0) {
+            result.log(LOGGER, ProcessRunner.LogLevel.DEBUG, ProcessRunner.LogLevel.DEBUG);
+            throw new IOException("Could not read the database in " + root + ". Return code " + result.getExitCode());
+        }
+
+        List<Path> environments = new ArrayList<>();
+        for (ProcessRunner.OutputLine line : result.getOutput()) {
+            if (line.isError() || line.getText().trim().isEmpty()) {
+                continue;
+            }
+            Path environment = Paths.get(line.getText().trim());
+            if (environment.startsWith(root) && !environment.equals(root) && Files.isDirectory(environment)) {
+                environments.add(environment);
+            } else {
+                LOGGER.debug("Not packing {}, it is not an environment in {}.", environment, root);
+            }
+        }
+        return environments;
+    }
+
+    /**
+     * Strips the quotes and the comment of a YAML scalar.
+     */
+    private static String scalar(String value) {
+        String scalar = value.trim();
+        if (scalar.startsWith("'") || scalar.startsWith("\"")) {
+            int end = scalar.indexOf(scalar.charAt(0), 1);
+            return end > 0 ? scalar.substring(1, end) : scalar.substring(1);
+        }
+        int comment = scalar.indexOf(" #");
+        return (comment >= 0 ? scalar.substring(0, comment) : scalar).trim();
+    }
+
+    private static String realPath(File file) {
+        try {
+            return file.toPath().toRealPath().toString();
+        } catch (IOException e) {
+            return file.getAbsoluteFile().toPath().normalize().toString();
+        }
+    }
+
+    /**
+     * Extracts {@code archive} into {@code directory}, which must not exist yet. The contents are extracted next to
+     * it and moved into place, so that an interrupted restore leaves no partial directory behind.
+     */
+    static void restore(File archive, File directory) throws IOException {
+        LOGGER.info("Restoring the hook environments in {} from {}.", directory, archive);
+
+        directory.getAbsoluteFile().getParentFile().mkdirs();
+        File temporary = new File(directory.getAbsolutePath() + "." + UUID.randomUUID() + ".tmp");
+        String temporaryPath = temporary.getCanonicalPath() + File.separator;
+
+        try {
+            try (ZipFile zipFile = new ZipFile(archive)) {
+                Properties attributes = new Properties();
+                ZipEntry attributesEntry = zipFile.getEntry(ATTRIBUTES_ENTRY);
+                if (attributesEntry != null) {
+                    try (InputStream in = zipFile.getInputStream(attributesEntry)) {
+                        attributes.load(in);
+                    }
+                }
+
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().equals(ATTRIBUTES_ENTRY)) {
+                        continue;
+                    }
+
+                    File target = checkedTarget(temporary, temporaryPath, entry.getName());
+                    if (entry.isDirectory()) {
+                        Files.createDirectories(target.toPath());
+                        continue;
+                    }
+
+                    Files.createDirectories(target.getParentFile().toPath());
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        Files.copy(in, target.toPath());
+                    }
+                    if (EXECUTABLE.equals(attributes.getProperty(entry.getName()))) {
+                        target.setExecutable(true);
+                    }
+                }
+
+                for (String name : attributes.stringPropertyNames()) {
+                    String value = attributes.getProperty(name);
+                    if (value.startsWith(SYMLINK_PREFIX)) {
+                        File link = checkedTarget(temporary, temporaryPath, name);
+                        Files.createDirectories(link.getParentFile().toPath());
+                        Files.createSymbolicLink(link.toPath(), Paths.get(value.substring(SYMLINK_PREFIX.length())));
+                    }
+                }
+            }
+
+            Files.move(temporary.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (Files.exists(temporary.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                FileUtils.deleteDirectory(temporary);
+            }
+        }
+    }
+
+    private static File checkedTarget(File directory, String directoryPath, String name) throws IOException {
+        File target = new File(directory, name);
+        if (!target.getCanonicalPath().startsWith(directoryPath)) {
+            throw new IOException("Archive entry " + name + " is outside of " + directory);
+        }
+        return target;
+    }
+
+    private static String entryName(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The Git hook script pre-commit installs, kept so that it can be written again without running pre-commit. The
+ * script pre-commit generated for one hook type serves as the template, the scripts of the other hook types only
+ * differ in the hook type passed to pre-commit within the templated section. Scripts without such a section,
+ * generated by old pre-commit versions, are not kept.
+ */
+final class HookShim {
+    static final String FILE_NAME = "hook-shim.properties";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HookShim.class);
+    private static final String TEMPLATE_START = "# start templated";
+    private static final String TEMPLATE_END = "# end templated";
+    private static final String LEGACY_SUFFIX = ".legacy";
+    private static final String HOOK_TYPE = "hookType";
+    private static final String SCRIPT = "script";
+
+    private final String hookType;
+    private final String script;
+
+    private HookShim(String hookType, String script) {
+        this.hookType = hookType;
+        this.script = script;
+    }
+
+    /**
+     * Keeps the script pre-commit installed for {@code hookType} in {@code file}, or removes the kept script if it
+     * cannot serve as a template.
+     */
+    static void capture(File hooksDirectory, String hookType, File file) throws IOException {
+        File hookFile = new File(hooksDirectory, hookType);
+        String script = hookFile.isFile() ? FileUtils.readFileToString(hookFile, StandardCharsets.UTF_8) : null;
+        if (script == null || findHookType(script, hookType) < 0) {
+            LOGGER.debug("{} cannot be written without pre-commit.", hookFile);
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty(HOOK_TYPE, hookType);
+        properties.setProperty(SCRIPT, script);
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "pre-commit-maven-plugin hook script");
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads the kept script, or returns {@code null} if there is none.
+     */
+    static HookShim read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+
+        String hookType = properties.getProperty(HOOK_TYPE);
+        String script = properties.getProperty(SCRIPT);
+        return hookType == null || script == null ? null : new HookShim(hookType, script);
+    }
+
+    /**
+     * Returns the script for {@code hookType}.
+     */
+    String render(String hookType) {
+        int index = findHookType(script, this.hookType);
+        if (index < 0) {
+            throw new IllegalStateException("Not a hook script template");
+        }
+        return script.substring(0, index) + hookType + script.substring(index + this.hookType.length());
+    }
+
+    /**
+     * Installs the script for {@code hookType} into {@code hooksDirectory} like {@code pre-commit install
+     * --overwrite} does, replacing an existing hook and removing the hook pre-commit kept from before it was
+     * installed.
+     */
+    void install(File hooksDirectory, String hookType) throws IOException {
+        File hookFile = new File(hooksDirectory, hookType);
+        Files.createDirectories(hooksDirectory.toPath());
+        Files.deleteIfExists(new File(hooksDirectory, hookType + LEGACY_SUFFIX).toPath());
+
+        File temporary = new File(hooksDirectory, hookType + ".tmp");
+        FileUtils.writeStringToFile(temporary, render(hookType), StandardCharsets.UTF_8);
+        temporary.setExecutable(true, false);
+        Files.move(temporary.toPath(), hookFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.info("pre-commit installed at {}", hookFile);
+    }
+
+    /**
+     * Returns the index of the hook type in the arguments in the templated section of {@code script}, or -1 if it
+     * is not there exactly once.
+     */
+    private static int findHookType(String script, String hookType) {
+        int start = script.indexOf(TEMPLATE_START);
+        int end = script.indexOf(TEMPLATE_END, Math.max(start, 0));
+        if (start < 0 || end < 0) {
+            return -1;
+        }
+
+        Matcher matcher = Pattern.compile("\\s--hook-type=(" + Pattern.quote(hookType) + ")[\\s)]")
+                .matcher(script.substring(0, end));
+        if (!matcher.find(start)) {
+            return -1;
+        }
+        int index = matcher.start(1);
+        return matcher.find() ? -1 : index;
+    }
+}
@@ -9,17 +9,26 @@ public interface InstallConfig {
     File getWorkingDirectory();
 
     CacheResolver getCacheResolver();
+
+    boolean isOffline();
+
+    InstallMode getInstallMode();
 }
 
 final class DefaultInstallConfig implements InstallConfig {
     private final File installDirectory;
     private final File workingDirectory;
     private final CacheResolver cacheResolver;
+    private final boolean offline;
+    private final InstallMode installMode;
 
-    public DefaultInstallConfig(File installDirectory, File workingDirectory, CacheResolver cacheResolver) {
+    public DefaultInstallConfig(File installDirectory, File workingDirectory, CacheResolver cacheResolver,
+                                boolean offline, InstallMode installMode) {
         this.installDirectory = installDirectory;
         this.workingDirectory = workingDirectory;
         this.cacheResolver = cacheResolver;
+        this.offline = offline;
+        this.installMode = installMode;
     }
 
     @Override
@@ -35,4 +44,14 @@ final class DefaultInstallConfig implements InstallConfig {
     public CacheResolver getCacheResolver() {
         return cacheResolver;
     }
+
+    @Override
+    public boolean isOffline() {
+        return offline;
+    }
+
+    @Override
+    public InstallMode getInstallMode() {
+        return installMode;
+    }
 }
@@ -0,0 +1,21 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+/**
+ * How pre-commit is run from the downloaded archive, by the plugin and by the installed Git hooks.
+ */
+public enum InstallMode {
+    /**
+     * Run the zipapp archive directly. Python imports pre-commit from the archive on every invocation.
+     */
+    ARCHIVE,
+    /**
+     * Extract the zipapp archive into a directory next to it, named after its digest, and compile it. Python runs
+     * pre-commit from the directory and imports compiled files.
+     */
+    UNPACKED,
+    /**
+     * Install pre-commit into a virtualenv in the install directory, created once per version and interpreter.
+     * Python imports pre-commit from compiled files.
+     */
+    VIRTUALENV
+}
@@ -0,0 +1,125 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Fingerprint of a completed installation. It is persisted in the install directory so that later builds can
+ * skip the installation when nothing that influences it has changed.
+ */
+final class InstallState {
+    static final String FILE_NAME = "install-state.properties";
+    static final String MISSING = "missing";
+
+    private static final String VERSION = "version";
+    private static final String HOOK_TYPES = "hookTypes";
+    private static final String INSTALL_MODE = "installMode";
+    private static final String CONFIG_SHA256 = "config.sha256";
+    private static final String ARCHIVE_SHA256 = "archive.sha256";
+    private static final String INTERPRETER_NAME = "interpreter.name";
+    private static final String INTERPRETER_PATH = "interpreter.path";
+    private static final String HOOK_PREFIX = "hook.";
+
+    private final Properties properties = new Properties();
+
+    InstallState setVersion(String version) {
+        return set(VERSION, version);
+    }
+
+    InstallState setHookTypes(String[] hookTypes) {
+        return set(HOOK_TYPES, String.join(",", hookTypes));
+    }
+
+    InstallState setInstallMode(InstallMode installMode) {
+        return set(INSTALL_MODE, installMode.name());
+    }
+
+    InstallState setConfigHash(String hash) {
+        return set(CONFIG_SHA256, hash);
+    }
+
+    InstallState setArchiveHash(String hash) {
+        return set(ARCHIVE_SHA256, hash);
+    }
+
+    InstallState setInterpreter(String name, File path) {
+        set(INTERPRETER_NAME, name);
+        return set(INTERPRETER_PATH, path == null ? null : path.getPath());
+    }
+
+    InstallState setHookHash(String hookType, String hash) {
+        return set(HOOK_PREFIX + hookType, hash);
+    }
+
+    String getInterpreterName() {
+        return properties.getProperty(INTERPRETER_NAME);
+    }
+
+    static InstallState read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        InstallState state = new InstallState();
+        try (InputStream in = new FileInputStream(file)) {
+            state.properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        return state;
+    }
+
+    void write(File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "pre-commit-maven-plugin install state");
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private InstallState set(String key, String value) {
+        properties.setProperty(key, value == null ? MISSING : value);
+        return this;
+    }
+
+    /**
+     * Returns whether this state differs from {@code other} in the hook types and hook scripts at most, in which case
+     * only the hook scripts need to be written.
+     */
+    boolean equalsExceptHooks(InstallState other) {
+        return withoutHooks().equals(other.withoutHooks());
+    }
+
+    private Properties withoutHooks() {
+        Properties withoutHooks = new Properties();
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.equals(HOOK_TYPES) && !name.startsWith(HOOK_PREFIX)) {
+                withoutHooks.setProperty(name, properties.getProperty(name));
+            }
+        }
+        return withoutHooks;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InstallState)) {
+            return false;
+        }
+        return properties.equals(((InstallState) o).properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return properties.hashCode();
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+/**
+ * How an artifact from the shared store is made available in a project's install directory.
+ */
+public enum Materialization {
+    /**
+     * Hard link to the stored file. Falls back to a copy across file systems.
+     */
+    HARDLINK,
+    /**
+     * Symbolic link to the stored file.
+     */
+    SYMLINK,
+    /**
+     * Copy-on-write clone of the stored file, on file systems supporting it. Falls back to a copy.
+     */
+    REFLINK,
+    /**
+     * Plain copy of the stored file.
+     */
+    COPY
+}
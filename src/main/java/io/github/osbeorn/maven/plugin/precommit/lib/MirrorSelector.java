@@ -0,0 +1,251 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Orders download roots by how fast and healthy they are. The roots are probed concurrently with a short timeout,
+ * and the latency and failures of every host are remembered across builds in a properties file, so that a host
+ * that failed recently is tried last without waiting for it again. The latency of a host is an exponentially
+ * weighted moving average of its probes.
+ * <p>
+ * Callers report the outcome of their downloads, a host that fails is backed off for longer the more often it
+ * fails in a row.
+ */
+final class MirrorSelector {
+    static final String FILE_NAME = "pre-commit-mirrors.properties";
+    static final int PROBE_TIMEOUT_MILLIS = 2_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MirrorSelector.class);
+    private static final long BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // weight of the latest probe in the moving average of the latency
+    private static final double LATENCY_WEIGHT = 0.25;
+    private static final String LATENCY = ".latency";
+    private static final String FAILURES = ".failures";
+    private static final String LAST_FAILURE = ".lastFailure";
+
+    private final File file;
+    private final FileDownloader fileDownloader;
+
+    MirrorSelector(File file, FileDownloader fileDownloader) {
+        this.file = file;
+        this.fileDownloader = fileDownloader;
+    }
+
+    /**
+     * Returns the {@code roots} that provide {@code path} fastest first, followed by the roots that could not be
+     * reached and the roots that are backed off. A single root is returned as is, without probing it.
+     */
+    List<String> order(List<String> roots, String path) {
+        if (roots.size() < 2) {
+            return roots;
+        }
+
+        Properties statistics = read();
+        long now = System.currentTimeMillis();
+
+        List<String> probed = new ArrayList<>();
+        List<String> backedOff = new ArrayList<>();
+        for (String root : roots) {
+            if (isBackedOff(statistics, host(root), now)) {
+                backedOff.add(root);
+            } else {
+                probed.add(root);
+            }
+        }
+
+        Map<String, Long> latencies = probe(probed, path);
+
+        List<String> reachable = new ArrayList<>(latencies.keySet());
+        List<String> unreachable = new ArrayList<>(probed);
+        unreachable.removeAll(reachable);
+
+        update(properties -> {
+            for (Map.Entry<String, Long> latency : latencies.entrySet()) {
+                recordLatency(properties, host(latency.getKey()), latency.getValue());
+            }
+            for (String root : unreachable) {
+                recordFailure(properties, host(root), now);
+            }
+        });
+
+        Properties updated = read();
+        // sorting is stable, roots that are equally fast stay in the configured order
+        reachable.sort(Comparator.comparingLong(root -> getLong(updated, host(root) + LATENCY)));
+        backedOff.sort(Comparator.comparingLong(root -> getLong(updated, host(root) + LAST_FAILURE)));
+
+        List<String> ordered = new ArrayList<>(reachable);
+        ordered.addAll(unreachable);
+        ordered.addAll(backedOff);
+        LOGGER.debug("Download roots by latency: {}.", ordered);
+        return ordered;
+    }
+
+    /**
+     * Records that a download from {@code root} succeeded, which ends its back-off.
+     */
+    void recordSuccess(String root) {
+        update(properties -> properties.remove(host(root) + FAILURES));
+    }
+
+    /**
+     * Records that a download from {@code root} failed, which backs it off.
+     */
+    void recordFailure(String root) {
+        long now = System.currentTimeMillis();
+        update(properties -> recordFailure(properties, host(root), now));
+    }
+
+    /**
+     * Probes the roots concurrently and returns the latency of the ones that answered in time, in milliseconds.
+     */
+    private Map<String, Long> probe(List<String> roots, String path) {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        if (roots.isEmpty()) {
+            return latencies;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(roots.size());
+        try {
+            Map<String, Future<Long>> futures = new LinkedHashMap<>();
+            for (String root : roots) {
+                futures.put(root, executor.submit(() -> {
+                    long start = System.nanoTime();
+                    fileDownloader.probe(root + path, PROBE_TIMEOUT_MILLIS);
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }));
+            }
+
+            // a probe can take longer than its timeout when resolving the host hangs, do not wait for those
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2L * PROBE_TIMEOUT_MILLIS);
+            for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    latencies.put(future.getKey(), future.getValue().get(remaining, TimeUnit.NANOSECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    LOGGER.info("Download root {} is not reachable, trying it last.", future.getKey());
+                    LOGGER.debug("Probing {} failed.", future.getKey(), e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return latencies;
+    }
+
+    private static boolean isBackedOff(Properties statistics, String host, long now) {
+        long failures = getLong(statistics, host + FAILURES);
+        if (failures == 0) {
+            return false;
+        }
+
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BACKOFF_MILLIS << Math.min(failures - 1, 16));
+        return now - getLong(statistics, host + LAST_FAILURE) < backoff;
+    }
+
+    /**
+     * Updates the exponentially weighted moving average of the latency of {@code host}. The latest probe weighs
+     * {@link #LATENCY_WEIGHT}, and every earlier probe weighs less the older it is, so a single slow probe does not
+     * demote a host for good.
+     */
+    static void recordLatency(Properties statistics, String host, long millis) {
+        String previous = statistics.getProperty(host + LATENCY);
+        long latency = previous == null
+                ? millis
+                : Math.round(LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * getLong(statistics, host + LATENCY));
+        statistics.setProperty(host + LATENCY, String.valueOf(latency));
+    }
+
+    private static void recordFailure(Properties statistics, String host, long now) {
+        statistics.setProperty(host + FAILURES, String.valueOf(getLong(statistics, host + FAILURES) + 1));
+        statistics.setProperty(host + LAST_FAILURE, String.valueOf(now));
+    }
+
+    /**
+     * Returns the scheme and authority of a root, which identify the host its statistics are kept for. Roots
+     * without an authority, like local files, are identified by the whole root.
+     */
+    static String host(String root) {
+        try {
+            URI uri = new URI(root.replace('\\', '/'));
+            if (uri.getScheme() == null || uri.getAuthority() == null) {
+                return root;
+            }
+            return uri.getScheme() + "://" + uri.getAuthority();
+        } catch (URISyntaxException e) {
+            return root;
+        }
+    }
+
+    private Properties read() {
+        Properties statistics = new Properties();
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                statistics.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                // damaged statistics only lose the order of the roots
+                statistics.clear();
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Applies {@code update} to the statistics while holding the lock on them. Failures are logged, as downloads
+     * work without the statistics.
+     */
+    private void update(Update update) {
+        try (CacheLock ignored = CacheLock.acquire(file)) {
+            Properties statistics = read();
+            update.apply(statistics);
+
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            File temporary = new File(file.getPath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(temporary)) {
+                statistics.store(out, "pre-commit-maven-plugin download root statistics");
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Could not record the download root statistics in {}.", file, e);
+        }
+    }
+
+    private static long getLong(Properties statistics, String key) {
+        try {
+            String value = statistics.getProperty(key);
+            return value == null ? 0 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private interface Update {
+        void apply(Properties statistics);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder event for a phase recorded by {@link Timings}. The plugin runs on Java 8, where many JDKs lack
+ * the {@code jdk.jfr} API, so the event type is defined with {@code jdk.jfr.EventFactory} through reflection and
+ * nothing links against {@code jdk.jfr}. Events are handled as plain {@link Object}s.
+ */
+final class PhaseEvent {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PhaseEvent.class);
+    private static final Method IS_INITIALIZED = findIsInitialized();
+
+    private static final int PHASE = 0;
+    private static final int BYTES = 1;
+    private static final int CACHE = 2;
+    private static final int PROCESSES = 3;
+
+    private PhaseEvent() {
+    }
+
+    /**
+     * Returns whether Flight Recorder has been started. Defining the event type takes longer than most phases, so
+     * it is only defined when its events can be recorded.
+     */
+    static boolean isRecording() {
+        if (IS_INITIALIZED == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_INITIALIZED.invoke(null) && EventType.INSTANCE != null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Begins an event for {@code phase}, or returns {@code null} if it cannot be recorded.
+     */
+    static Object begin(String phase) {
+        EventType type = EventType.INSTANCE;
+        try {
+            Object event = type.newEvent.invoke(type.factory);
+            type.set.invoke(event, PHASE, phase);
+            type.begin.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Could not begin the Flight Recorder event of {}.", phase, e);
+            return null;
+        }
+    }
+
+    static void commit(Object event, long bytes, Boolean cacheHit, int processes) {
+        EventType type = EventType.INSTANCE;
+        try {
+            type.end.invoke(event);
+            if ((Boolean) type.shouldCommit.invoke(event)) {
+                type.set.invoke(event, BYTES, bytes);
+                type.set.invoke(event, CACHE, cacheHit == null ? "" : cacheHit ? "hit" : "miss");
+                type.set.invoke(event, PROCESSES, processes);
+                type.commit.invoke(event);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Could not commit the Flight Recorder event.", e);
+        }
+    }
+
+    private static Method findIsInitialized() {
+        try {
+            return Class.forName("jdk.jfr.FlightRecorder").getMethod("isInitialized");
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            LOGGER.debug("JDK Flight Recorder is not available, not emitting events.");
+            return null;
+        }
+    }
+
+    /**
+     * The event type, defined when it is first used. {@link #INSTANCE} is {@code null} if it cannot be defined.
+     */
+    private static final class EventType {
+        static final EventType INSTANCE = define();
+
+        private final Object factory;
+        private final Method newEvent;
+        private final Method set;
+        private final Method begin;
+        private final Method end;
+        private final Method shouldCommit;
+        private final Method commit;
+
+        private EventType(Object factory) throws ReflectiveOperationException {
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            this.factory = factory;
+            this.newEvent = Class.forName("jdk.jfr.EventFactory").getMethod("newEvent");
+            this.set = event.getMethod("set", int.class, Object.class);
+            this.begin = event.getMethod("begin");
+            this.end = event.getMethod("end");
+            this.shouldCommit = event.getMethod("shouldCommit");
+            this.commit = event.getMethod("commit");
+        }
+
+        private static EventType define() {
+            try {
+                Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+                Constructor<?> element = annotationElement.getConstructor(Class.class, Object.class);
+                Class<?> name = Class.forName("jdk.jfr.Name");
+                Class<?> label = Class.forName("jdk.jfr.Label");
+                Class<?> category = Class.forName("jdk.jfr.Category");
+                Class<?> description = Class.forName("jdk.jfr.Description");
+                Class<?> dataAmount = Class.forName("jdk.jfr.DataAmount");
+
+                List<Object> annotations = Arrays.asList(
+                        element.newInstance(name, "io.github.osbeorn.precommit.Phase"),
+                        element.newInstance(label, "pre-commit Phase"),
+                        element.newInstance(category, new String[]{"pre-commit-maven-plugin"}),
+                        element.newInstance(description, "A phase of installing or running pre-commit"));
+
+                // in the order of the field indexes
+                Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor")
+                        .getConstructor(Class.class, String.class, List.class);
+                List<Object> fields = Arrays.asList(
+                        field.newInstance(String.class, "phase",
+                                Collections.singletonList(element.newInstance(label, "Phase"))),
+                        field.newInstance(long.class, "bytes",
+                                Arrays.asList(element.newInstance(label, "Bytes"), element.newInstance(dataAmount, "BYTES"))),
+                        field.newInstance(String.class, "cache",
+                                Arrays.asList(element.newInstance(label, "Cache"), element.newInstance(description,
+                                        "hit, miss or empty when the phase does not use a cache"))),
+                        field.newInstance(int.class, "processes",
+                                Collections.singletonList(element.newInstance(label, "Processes"))));
+
+                Object factory = Class.forName("jdk.jfr.EventFactory")
+                        .getMethod("create", List.class, List.class)
+                        .invoke(null, annotations, fields);
+                return new EventType(factory);
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                LOGGER.debug("Could not define the Flight Recorder event, not emitting events.", e);
+                return null;
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.osbeorn.maven.plugin.precommit.lib;
 
 import java.io.File;
+import java.io.IOException;
 
 public final class PluginFactory {
     private static final String DEFAULT_CACHE_PATH = "cache";
@@ -8,6 +9,13 @@ public final class PluginFactory {
     private final File workingDirectory;
     private final File installDirectory;
     private final CacheResolver cacheResolver;
+    private String pythonExecutable;
+    private String[] pythonCandidates;
+    private boolean offline;
+    private int downloadConnections = 1;
+    private InstallMode installMode = InstallMode.ARCHIVE;
+    private DigestCache digestCache;
+    private final Timings timings = new Timings();
 
     public PluginFactory(File workingDirectory, File installDirectory) {
         this(workingDirectory, installDirectory, getDefaultCacheResolver(installDirectory));
@@ -19,17 +27,72 @@ public final class PluginFactory {
         this.cacheResolver = cacheResolver;
     }
 
+    public PluginFactory setPythonExecutable(String pythonExecutable) {
+        this.pythonExecutable = pythonExecutable;
+        return this;
+    }
+
+    public PluginFactory setPythonCandidates(String[] pythonCandidates) {
+        this.pythonCandidates = pythonCandidates;
+        return this;
+    }
+
+    public PluginFactory setOffline(boolean offline) {
+        this.offline = offline;
+        return this;
+    }
+
+    public PluginFactory setDownloadConnections(int downloadConnections) {
+        this.downloadConnections = downloadConnections;
+        return this;
+    }
+
+    public PluginFactory setInstallMode(InstallMode installMode) {
+        this.installMode = installMode;
+        return this;
+    }
+
+    /**
+     * Returns the root of the Git working tree containing the working directory, or {@code null} if it is not inside
+     * one.
+     */
+    public File getGitRoot() throws IOException {
+        GitRepository repository = GitRepository.find(workingDirectory);
+        return repository == null ? null : repository.getWorkTree();
+    }
+
     public BinaryInstaller getBinaryInstaller() {
-        return new BinaryInstaller(getInstallConfig(), new DefaultFileCopier(), new DefaultFileDownloader(),
-                new DefaultPythonHandle());
+        return new BinaryInstaller(getInstallConfig(), new DefaultFileCopier(),
+                new DefaultFileDownloader(downloadConnections), getPythonHandle(), getDigestCache(), timings);
+    }
+
+    public BinaryPrefetcher getBinaryPrefetcher() {
+        return new BinaryPrefetcher(getInstallConfig(), new DefaultFileDownloader(downloadConnections));
+    }
+
+    public CachePruner getCachePruner() {
+        return new CachePruner(cacheResolver.getIndexFile(), new File(installDirectory, CachePruner.INDEX_FILE_NAME));
     }
 
     public BinaryRunner getBinaryRunner() {
-        return new BinaryRunner(getInstallConfig(), new DefaultPythonHandle());
+        return new BinaryRunner(getInstallConfig(), getPythonHandle());
+    }
+
+    private PythonHandle getPythonHandle() {
+        return new DefaultPythonHandle(new PythonLocator(
+                new File(installDirectory, PythonLocator.CACHE_FILE_NAME), pythonExecutable, pythonCandidates),
+                installMode, getDigestCache(), timings);
+    }
+
+    private DigestCache getDigestCache() {
+        if (digestCache == null) {
+            digestCache = new DigestCache(new File(installDirectory, DigestCache.FILE_NAME));
+        }
+        return digestCache;
     }
 
     private InstallConfig getInstallConfig() {
-        return new DefaultInstallConfig(installDirectory, workingDirectory, cacheResolver);
+        return new DefaultInstallConfig(installDirectory, workingDirectory, cacheResolver, offline, installMode);
     }
 
     private static CacheResolver getDefaultCacheResolver(File root) {
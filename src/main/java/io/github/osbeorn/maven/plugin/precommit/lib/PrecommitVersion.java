@@ -0,0 +1,69 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+/**
+ * A pre-commit release version such as {@code v3.4.0}, used to decide which command line features are available.
+ */
+final class PrecommitVersion implements Comparable<PrecommitVersion> {
+
+    /**
+     * First release accepting {@code --hook-type} more than once per {@code install} invocation.
+     */
+    static final PrecommitVersion MULTIPLE_HOOK_TYPES = new PrecommitVersion(1, 18, 0);
+
+    private final int major;
+    private final int minor;
+    private final int patch;
+
+    private PrecommitVersion(int major, int minor, int patch) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+    }
+
+    /**
+     * Parses a version string, ignoring a leading {@code v} and any suffix after the numeric components.
+     * Unparseable components are treated as {@code 0}.
+     */
+    static PrecommitVersion parse(String version) {
+        String[] parts = version.replaceAll("^v", "").split("\\.");
+        return new PrecommitVersion(component(parts, 0), component(parts, 1), component(parts, 2));
+    }
+
+    boolean isAtLeast(PrecommitVersion other) {
+        return compareTo(other) >= 0;
+    }
+
+    private static int component(String[] parts, int index) {
+        if (index >= parts.length) {
+            return 0;
+        }
+        String digits = parts[index].replaceAll("^(\\d*).*$", "$1");
+        return digits.isEmpty() ? 0 : Integer.parseInt(digits);
+    }
+
+    @Override
+    public int compareTo(PrecommitVersion other) {
+        if (major != other.major) {
+            return Integer.compare(major, other.major);
+        }
+        if (minor != other.minor) {
+            return Integer.compare(minor, other.minor);
+        }
+        return Integer.compare(patch, other.patch);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PrecommitVersion && compareTo((PrecommitVersion) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (major * 31 + minor) * 31 + patch;
+    }
+
+    @Override
+    public String toString() {
+        return major + "." + minor + "." + patch;
+    }
+}
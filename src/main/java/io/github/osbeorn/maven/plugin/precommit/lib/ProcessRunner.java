@@ -0,0 +1,238 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs processes and drains their output on threads shared by all processes: virtual threads where the JVM has
+ * them, a pool of reusable daemon threads otherwise. Output is decoded as UTF-8 into a bounded buffer that the
+ * caller logs once the process has finished.
+ */
+final class ProcessRunner {
+    static final int DEFAULT_BUFFER_LINES = 1000;
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private ProcessRunner() {
+    }
+
+    /**
+     * Starts the process and waits until it exited and all of its output has been read.
+     */
+    static ProcessResult run(ProcessBuilder builder) throws IOException, InterruptedException {
+        return run(builder, DEFAULT_BUFFER_LINES);
+    }
+
+    static ProcessResult run(ProcessBuilder builder, int bufferLines) throws IOException, InterruptedException {
+        try {
+            return run(builder, bufferLines, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Unbounded run timed out", e);
+        }
+    }
+
+    /**
+     * Starts the process and waits at most {@code timeout} until it exited and all of its output has been read. A
+     * process that takes longer is destroyed.
+     */
+    static ProcessResult run(ProcessBuilder builder, int bufferLines, long timeout, TimeUnit unit)
+            throws IOException, InterruptedException, TimeoutException {
+        Process process = builder.start();
+        process.getOutputStream().close();
+
+        OutputBuffer output = new OutputBuffer(bufferLines);
+        Future<?> errorDrainer = EXECUTOR.submit(() -> drain(process.getErrorStream(), output, true));
+        Future<?> outputDrainer = EXECUTOR.submit(() -> drain(process.getInputStream(), output, false));
+
+        long start = System.nanoTime();
+        try {
+            if (!process.waitFor(timeout, unit)) {
+                throw new TimeoutException("Process did not exit within " + timeout + " " + unit);
+            }
+            // a child of the process may still hold the streams open
+            errorDrainer.get(remaining(start, timeout, unit), TimeUnit.NANOSECONDS);
+            outputDrainer.get(remaining(start, timeout, unit), TimeUnit.NANOSECONDS);
+            return new ProcessResult(process.exitValue(), output);
+        } catch (ExecutionException e) {
+            throw new IOException("Reading process stream failed.", e.getCause());
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+            errorDrainer.cancel(true);
+            outputDrainer.cancel(true);
+        }
+    }
+
+    private static long remaining(long start, long timeout, TimeUnit unit) {
+        long timeoutNanos = unit.toNanos(timeout);
+        if (timeoutNanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, timeoutNanos - (System.nanoTime() - start));
+    }
+
+    private static Void drain(InputStream stream, OutputBuffer output, boolean error) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(new OutputLine(error, line));
+            }
+        }
+        return null;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "pre-commit-process-output");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    enum LogLevel {
+        ERROR, WARN, INFO, DEBUG;
+
+        boolean isEnabled(Logger logger) {
+            switch (this) {
+                case ERROR:
+                    return logger.isErrorEnabled();
+                case WARN:
+                    return logger.isWarnEnabled();
+                case INFO:
+                    return logger.isInfoEnabled();
+                default:
+                    return logger.isDebugEnabled();
+            }
+        }
+
+        void log(Logger logger, String line) {
+            switch (this) {
+                case ERROR:
+                    logger.error(line);
+                    break;
+                case WARN:
+                    logger.warn(line);
+                    break;
+                case INFO:
+                    logger.info(line);
+                    break;
+                default:
+                    logger.debug(line);
+                    break;
+            }
+        }
+    }
+
+    static final class OutputLine {
+        private final boolean error;
+        private final String text;
+
+        OutputLine(boolean error, String text) {
+            this.error = error;
+            this.text = text;
+        }
+
+        boolean isError() {
+            return error;
+        }
+
+        String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * Keeps the last lines written to both streams, in the order they were read.
+     */
+    private static final class OutputBuffer {
+        private final int capacity;
+        private final Deque<OutputLine> lines = new ArrayDeque<>();
+        private int dropped;
+
+        OutputBuffer(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(OutputLine line) {
+            if (lines.size() == capacity) {
+                lines.removeFirst();
+                dropped++;
+            }
+            lines.addLast(line);
+        }
+
+        synchronized List<OutputLine> getLines() {
+            return new ArrayList<>(lines);
+        }
+
+        synchronized int getDropped() {
+            return dropped;
+        }
+    }
+
+    static final class ProcessResult {
+        private final int exitCode;
+        private final List<OutputLine> output;
+        private final int droppedLines;
+
+        private ProcessResult(int exitCode, OutputBuffer output) {
+            this.exitCode = exitCode;
+            this.output = output.getLines();
+            this.droppedLines = output.getDropped();
+        }
+
+        int getExitCode() {
+            return exitCode;
+        }
+
+        List<OutputLine> getOutput() {
+            return output;
+        }
+
+        /**
+         * Logs the buffered output. After a successful run each stream is logged at its level, if enabled. After a
+         * failed run all output is logged as errors.
+         */
+        void log(Logger logger, LogLevel outputLevel, LogLevel errorLevel) {
+            boolean failed = exitCode != 0;
+            boolean outputEnabled = failed || outputLevel.isEnabled(logger);
+            boolean errorEnabled = failed || errorLevel.isEnabled(logger);
+            if (!outputEnabled && !errorEnabled) {
+                return;
+            }
+
+            if (droppedLines > 0 && failed) {
+                logger.error("({} earlier lines of output omitted)", droppedLines);
+            }
+            for (OutputLine line : output) {
+                if (failed) {
+                    LogLevel.ERROR.log(logger, line.getText());
+                } else if (line.isError() ? errorEnabled : outputEnabled) {
+                    (line.isError() ? errorLevel : outputLevel).log(logger, line.getText());
+                }
+            }
+        }
+    }
+}
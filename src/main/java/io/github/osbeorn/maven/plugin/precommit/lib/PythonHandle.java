@@ -1,11 +1,28 @@
 package io.github.osbeorn.maven.plugin.precommit.lib;
 
-import org.apache.commons.io.IOUtils;
+import io.github.osbeorn.maven.plugin.precommit.lib.ProcessRunner.LogLevel;
+import io.github.osbeorn.maven.plugin.precommit.lib.ProcessRunner.OutputLine;
+import io.github.osbeorn.maven.plugin.precommit.lib.ProcessRunner.ProcessResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 final class PythonException extends Exception {
     PythonException(String message){
@@ -18,7 +35,32 @@ final class PythonException extends Exception {
 
 
 interface PythonHandle {
-    void installPrecommit(File setupFile, String[] hookTypes) throws PythonException;
+    /**
+     * Installs the Git hooks, and the hook environments unless {@code installEnvironments} is {@code false}.
+     */
+    void installPrecommit(File setupFile, String version, String[] hookTypes, boolean installEnvironments)
+            throws PythonException;
+
+    /**
+     * Starts installing the hook environments in a process that runs in the background, writing its output to
+     * {@code logFile}. Unless {@code pendingFile} is {@code null}, the process deletes it once it succeeded.
+     */
+    Process startEnvironmentsInstall(File setupFile, File logFile, File pendingFile) throws PythonException;
+
+    ProcessResult runPrecommit(File setupFile, List<String> arguments, File workingDirectory, int outputLines)
+            throws PythonException;
+
+    String getPythonExecutable() throws PythonException;
+
+    /**
+     * Returns whether pre-commit can be run from {@code setupFile} without any further preparation.
+     */
+    boolean isPrepared(File setupFile) throws PythonException;
+
+    /**
+     * Returns the files created next to {@code setupFile} to run pre-commit from it.
+     */
+    List<File> getPreparedFiles(File setupFile) throws PythonException;
 }
 
 final class VirtualEnvDescriptor {
@@ -29,92 +71,436 @@ final class VirtualEnvDescriptor {
         this.directory = new File(directory + "/." + name + "-virtualenv");
         this.name = name;
     }
+
+    File getPythonExecutable() {
+        return Executables.isWindows()
+                ? new File(directory, "Scripts/python.exe")
+                : new File(directory, "bin/python");
+    }
+
+    /**
+     * Records what the virtualenv was created from, it is written last so that an incomplete virtualenv is rebuilt.
+     */
+    File getStateFile() {
+        return new File(directory, "pre-commit-maven-plugin.properties");
+    }
 }
 
 final class DefaultPythonHandle implements PythonHandle {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PythonHandle.class);
+    private static final String UNPACKED_SUFFIX = "-unpacked";
+    // runs the command after the pending file, and deletes the pending file if the command succeeds
+    private static final String PENDING_SCRIPT = "import os, subprocess, sys; "
+            + "code = subprocess.call(sys.argv[2:]); "
+            + "code == 0 and os.remove(sys.argv[1]); "
+            + "sys.exit(code)";
+
+    private final PythonLocator pythonLocator;
+    private final InstallMode installMode;
+    private final DigestCache digestCache;
+    private final Timings timings;
+    private PythonInterpreter pythonInterpreter;
+    private File preparedSetupFile;
+
+    DefaultPythonHandle(PythonLocator pythonLocator, InstallMode installMode, DigestCache digestCache,
+                        Timings timings) {
+        this.pythonLocator = pythonLocator;
+        this.installMode = installMode;
+        this.digestCache = digestCache;
+        this.timings = timings;
+    }
 
     @Override
-    public void installPrecommit(File setupFile, String[] hookTypes) throws PythonException {
+    public void installPrecommit(File setupFile, String version, String[] hookTypes, boolean installEnvironments)
+            throws PythonException {
         LOGGER.info("About to install Git hooks.");
 
-        // There is seemingly no way to install all hooks at once
-        // Thus we run pre-commit as many times as necessary
-        for (String hookType : hookTypes) {
-            String[] command = new String[]{
-                    getPython3Executable(),
-                    setupFile.getAbsolutePath(),
-                    "install",
-                    "--install-hooks",
-                    "--overwrite",
-                    "--hook-type",
-                    hookType
-            };
-
-            LOGGER.debug("Running {}.", (Object) command);
-
-            try {
-                Process child = Runtime.getRuntime().exec(command/*, environment, setupFile.getParentFile()*/);
-
-                // Write messages to output
-                BackgroundStreamLogger errorGobbler = new BackgroundStreamLogger(child.getErrorStream(), "ERROR");
-                BackgroundStreamLogger outputGobbler = new BackgroundStreamLogger(child.getInputStream(), "DEBUG");
-                errorGobbler.start();
-                outputGobbler.start();
-
-                int result = child.waitFor();
-
-                if (result != 0) {
-                    throw new PythonException("Failed to install Git hook " + hookType + ". Return code " + result);
-                }
-            } catch (IOException e) {
-                throw new PythonException("Failed to execute python", e);
-            } catch (InterruptedException e) {
-                throw new PythonException("Unexpected interruption while waiting for pre-commit install process", e);
+        if (PrecommitVersion.parse(version).isAtLeast(PrecommitVersion.MULTIPLE_HOOK_TYPES)) {
+            List<String> command = installCommand(setupFile, installEnvironments);
+            for (String hookType : hookTypes) {
+                command.add("--hook-type");
+                command.add(hookType);
+            }
+
+            run("pre-commit install", command, "Failed to install Git hooks " + String.join(", ", hookTypes));
+        } else {
+            // Older versions accept a single hook type per invocation, thus we run pre-commit as many times as
+            // necessary. The hook environments only need to be installed once.
+            boolean installHooks = installEnvironments;
+            for (String hookType : hookTypes) {
+                List<String> command = installCommand(setupFile, installHooks);
+                command.add("--hook-type");
+                command.add(hookType);
+
+                run("pre-commit install", command, "Failed to install Git hook " + hookType);
+                installHooks = false;
             }
         }
 
         LOGGER.info("Successfully installed Git hooks.");
     }
 
-    private String getPython3Executable() throws PythonException {
-        if (binaryExists("python3")) return "python3";
-        if (binaryExists("python")) return "python";
+    @Override
+    public Process startEnvironmentsInstall(File setupFile, File logFile, File pendingFile) throws PythonException {
+        List<String> command = new ArrayList<>();
+        if (pendingFile != null) {
+            // the process outlives the build, only it can tell when it succeeded
+            command.add(getPythonExecutable());
+            command.add("-c");
+            command.add(PENDING_SCRIPT);
+            command.add(pendingFile.getAbsolutePath());
+        }
+        command.addAll(precommitCommand(setupFile));
+        command.add("install-hooks");
+
+        LOGGER.debug("Starting {} in the background.", command);
+        try (Timings.Phase ignored = timings.start("pre-commit install-hooks start").process()) {
+            logFile.getAbsoluteFile().getParentFile().mkdirs();
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+            process.getOutputStream().close();
+            return process;
+        } catch (IOException e) {
+            throw new PythonException("Failed to execute python", e);
+        }
+    }
+
+    @Override
+    public ProcessResult runPrecommit(File setupFile, List<String> arguments, File workingDirectory, int outputLines)
+            throws PythonException {
+        List<String> command = precommitCommand(setupFile);
+        command.addAll(arguments);
+
+        LOGGER.debug("Running {} in {}.", command, workingDirectory);
+
+        try (Timings.Phase ignored = timings.start("pre-commit run").process()) {
+            return ProcessRunner.run(new ProcessBuilder(command).directory(workingDirectory), outputLines);
+        } catch (IOException e) {
+            throw new PythonException("Failed to execute python", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PythonException("Unexpected interruption while waiting for pre-commit run process", e);
+        }
+    }
+
+    private List<String> installCommand(File setupFile, boolean installHooks) throws PythonException {
+        List<String> command = precommitCommand(setupFile);
+        command.add("install");
+        if (installHooks) {
+            command.add("--install-hooks");
+        }
+        command.add("--overwrite");
+        return command;
+    }
+
+    /**
+     * Returns the command running pre-commit. In {@link InstallMode#VIRTUALENV} and {@link InstallMode#UNPACKED}
+     * mode the virtualenv or the unpacked archive is prepared first, so that the Git hooks installed by that command
+     * run from it as well.
+     */
+    private List<String> precommitCommand(File setupFile) throws PythonException {
+        List<String> command = new ArrayList<>();
+        if (installMode == InstallMode.VIRTUALENV) {
+            command.add(prepareVirtualEnv(setupFile).getPythonExecutable().getPath());
+            command.add("-m");
+            command.add("pre_commit");
+        } else if (installMode == InstallMode.UNPACKED) {
+            command.add(getPythonExecutable());
+            command.add(prepareUnpackedArchive(setupFile).getAbsolutePath());
+        } else {
+            command.add(getPythonExecutable());
+            command.add(setupFile.getAbsolutePath());
+        }
+        return command;
+    }
+
+    @Override
+    public boolean isPrepared(File setupFile) throws PythonException {
+        if (installMode == InstallMode.UNPACKED) {
+            return getUnpackedDirectory(setupFile).isDirectory();
+        }
+        if (installMode != InstallMode.VIRTUALENV) {
+            return true;
+        }
+
+        VirtualEnvDescriptor virtualEnv = getVirtualEnv(setupFile);
+        return virtualEnv.getPythonExecutable().isFile()
+                && getVirtualEnvState(setupFile).equals(readProperties(virtualEnv.getStateFile()));
+    }
+
+    @Override
+    public List<File> getPreparedFiles(File setupFile) throws PythonException {
+        List<File> files = new ArrayList<>();
+        if (installMode == InstallMode.VIRTUALENV) {
+            files.add(getVirtualEnv(setupFile).directory);
+        } else if (installMode == InstallMode.UNPACKED) {
+            files.add(getUnpackedDirectory(setupFile));
+        }
+        return files;
+    }
+
+    private synchronized File prepareUnpackedArchive(File setupFile) throws PythonException {
+        File directory = getUnpackedDirectory(setupFile);
+        if (setupFile.equals(preparedSetupFile)) {
+            return directory;
+        }
+
+        try (CacheLock ignored = CacheLock.acquire(directory)) {
+            if (!directory.isDirectory()) {
+                unpackArchive(setupFile, directory);
+            } else {
+                LOGGER.debug("{} is already unpacked into {}.", setupFile.getName(), directory);
+            }
+        } catch (IOException e) {
+            throw new PythonException("Could not unpack " + setupFile + " into " + directory, e);
+        }
 
-        throw new PythonException(
-                "Could not find a compatible python 3 version on your system. 3.3 is the minimum supported python version. " +
-                "Please check you have a compatible 'python' or 'python3' executable on your PATH"
-        );
+        preparedSetupFile = setupFile;
+        return directory;
     }
 
-    private boolean binaryExists(String binaryName) {
-        Runtime runtime = Runtime.getRuntime();
+    /**
+     * Extracts and compiles the archive in a temporary directory which is then moved into place, so that a directory
+     * named after the archive digest is always complete. Directories unpacked from other archives are removed.
+     */
+    private void unpackArchive(File setupFile, File directory) throws IOException, PythonException {
+        LOGGER.info("Unpacking {} into {}.", setupFile.getName(), directory);
 
+        File temporary = new File(directory.getPath() + ".tmp");
+        FileUtils.deleteDirectory(temporary);
         try {
-            Process proc = runtime.exec(new String[]{binaryName, "--version"});
-            String output = IOUtils.toString(proc.getInputStream());
+            extractArchive(setupFile, temporary);
+            run("compileall", Arrays.asList(getPythonExecutable(), "-m", "compileall", "-q",
+                            "-d", directory.getAbsolutePath(), temporary.getAbsolutePath()),
+                    "Failed to compile " + temporary);
+            Files.move(temporary.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.deleteDirectory(temporary);
+        }
 
-            if (proc.waitFor() == 0 && checkVersion(output)) {
-                LOGGER.debug("Located python binary `{}`.", binaryName);
-                return true;
+        String prefix = getUnpackedDirectoryPrefix(setupFile);
+        File[] siblings = directory.getParentFile().listFiles((dir, name) ->
+                name.startsWith(prefix) && name.endsWith(UNPACKED_SUFFIX) && !name.equals(directory.getName()));
+        if (siblings != null) {
+            for (File sibling : siblings) {
+                LOGGER.debug("Removing {}.", sibling);
+                FileUtils.deleteQuietly(sibling);
             }
-        } catch (Exception ignored) {
         }
+    }
 
-        LOGGER.debug("Did not locate a python binary called `{}`.", binaryName);
-        return false;
+    private File getUnpackedDirectory(File setupFile) throws PythonException {
+        return new File(setupFile.getParentFile(),
+                getUnpackedDirectoryPrefix(setupFile) + sha256(setupFile).substring(0, 16) + UNPACKED_SUFFIX);
     }
 
-    private boolean checkVersion(String pythonOutput) throws PythonException {
+    private String sha256(File setupFile) throws PythonException {
         try {
-            String versionString = pythonOutput.split(" ")[1];
-            int majorVersion = Integer.parseInt(versionString.split("\\.")[0]);
-            int minorVersion = Integer.parseInt(versionString.split("\\.")[1]);
+            return digestCache.sha256(setupFile);
+        } catch (IOException e) {
+            throw new PythonException("Could not compute the checksum of " + setupFile, e);
+        }
+    }
 
-            return majorVersion >= 3 && minorVersion >= 3;
-        } catch (Exception exception) {
-            throw new PythonException("Unexpected python version output: " + pythonOutput, exception);
+    private static String getUnpackedDirectoryPrefix(File setupFile) {
+        String name = setupFile.getName();
+        return "." + name.substring(0, name.lastIndexOf('.')) + "-";
+    }
+
+    private synchronized VirtualEnvDescriptor prepareVirtualEnv(File setupFile) throws PythonException {
+        VirtualEnvDescriptor virtualEnv = getVirtualEnv(setupFile);
+        if (setupFile.equals(preparedSetupFile)) {
+            return virtualEnv;
+        }
+
+        // builds sharing the install directory must not recreate the virtualenv while another one is using it
+        try (CacheLock ignored = CacheLock.acquire(virtualEnv.directory)) {
+            if (!isPrepared(setupFile)) {
+                createVirtualEnv(virtualEnv, setupFile);
+            } else {
+                LOGGER.debug("Virtualenv {} is up to date.", virtualEnv.directory);
+            }
+        } catch (IOException e) {
+            throw new PythonException("Could not create the virtualenv " + virtualEnv.directory, e);
+        }
+
+        preparedSetupFile = setupFile;
+        return virtualEnv;
+    }
+
+    /**
+     * Creates a virtualenv and installs pre-commit into it. The zipapp archives published by pre-commit bundle the
+     * wheels of pre-commit and its dependencies, which are installed with pip without accessing the network. Other
+     * archives are extracted into the virtualenv's {@code site-packages} and compiled.
+     */
+    private void createVirtualEnv(VirtualEnvDescriptor virtualEnv, File setupFile) throws IOException, PythonException {
+        LOGGER.info("Creating virtualenv {} for {}.", virtualEnv.directory, setupFile.getName());
+
+        File wheelDirectory = new File(virtualEnv.directory.getPath() + ".wheels");
+        FileUtils.deleteDirectory(virtualEnv.directory);
+        FileUtils.deleteDirectory(wheelDirectory);
+        try {
+            boolean hasWheels = extractArchive(setupFile, wheelDirectory, true);
+
+            List<String> command = new ArrayList<>(Arrays.asList(getPythonExecutable(), "-m", "venv"));
+            if (!hasWheels) {
+                command.add("--without-pip");
+            }
+            command.add(virtualEnv.directory.getAbsolutePath());
+            run("virtualenv", command, "Failed to create virtualenv " + virtualEnv.directory);
+
+            String python = virtualEnv.getPythonExecutable().getPath();
+            if (hasWheels) {
+                run("pip install", Arrays.asList(python, "-m", "pip", "install", "--disable-pip-version-check",
+                                "--no-index", "--find-links", wheelDirectory.getAbsolutePath(), "pre-commit"),
+                        "Failed to install pre-commit into virtualenv " + virtualEnv.directory);
+            } else {
+                List<OutputLine> output = run("virtualenv", Arrays.asList(python, "-c",
+                                "import sysconfig; print(sysconfig.get_paths()['purelib'])"),
+                        "Failed to locate the site-packages of virtualenv " + virtualEnv.directory).getOutput();
+                File sitePackages = new File(output.get(output.size() - 1).getText().trim());
+
+                extractArchive(setupFile, sitePackages, false);
+                run("compileall", Arrays.asList(python, "-m", "compileall", "-q", sitePackages.getAbsolutePath()),
+                        "Failed to compile pre-commit in virtualenv " + virtualEnv.directory);
+            }
+
+            writeProperties(virtualEnv.getStateFile(), getVirtualEnvState(setupFile));
+        } finally {
+            FileUtils.deleteDirectory(wheelDirectory);
+        }
+    }
+
+    /**
+     * Extracts either the wheels or the modules of a zipapp archive into {@code directory}, returning whether any
+     * file was extracted.
+     */
+    private static boolean extractArchive(File archive, File directory, boolean wheels) throws IOException {
+        boolean extracted = false;
+        String directoryPath = directory.getCanonicalPath() + File.separator;
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || name.equals("__main__.py") || name.endsWith(".whl") != wheels) {
+                    continue;
+                }
+
+                File target = wheels
+                        ? new File(directory, name.substring(name.lastIndexOf('/') + 1))
+                        : new File(directory, name);
+                if (!target.getCanonicalPath().startsWith(directoryPath)) {
+                    throw new IOException("Archive entry " + name + " is outside of " + directory);
+                }
+
+                Files.createDirectories(target.getParentFile().toPath());
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                extracted = true;
+            }
+        }
+        return extracted;
+    }
+
+    /**
+     * Extracts all entries of a zipapp archive into {@code directory}, so that it can be run as a directory.
+     */
+    private static void extractArchive(File archive, File directory) throws IOException {
+        String directoryPath = directory.getCanonicalPath() + File.separator;
+        try (ZipFile zipFile = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File target = new File(directory, entry.getName());
+                if (!target.getCanonicalPath().startsWith(directoryPath)) {
+                    throw new IOException("Archive entry " + entry.getName() + " is outside of " + directory);
+                }
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target.toPath());
+                    continue;
+                }
+                Files.createDirectories(target.getParentFile().toPath());
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    private VirtualEnvDescriptor getVirtualEnv(File setupFile) {
+        String name = setupFile.getName();
+        return new VirtualEnvDescriptor(setupFile.getParentFile(), name.substring(0, name.lastIndexOf('.')));
+    }
+
+    /**
+     * Identifies what a virtualenv is created from. The archive is identified by its digest, so that a republished
+     * archive of the same name and size is installed again.
+     */
+    private Properties getVirtualEnvState(File setupFile) throws PythonException {
+        Properties state = new Properties();
+        state.setProperty("archive.name", setupFile.getName());
+        state.setProperty("archive.sha256", sha256(setupFile));
+        state.setProperty("interpreter.path", getPythonExecutable());
+        state.setProperty("interpreter.version", getPythonInterpreter().getVersion());
+        return state;
+    }
+
+    private static Properties readProperties(File file) {
+        Properties properties = new Properties();
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.debug("Could not read {}.", file, e);
+            }
+        }
+        return properties;
+    }
+
+    private static void writeProperties(File file, Properties properties) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "pre-commit-maven-plugin virtualenv state");
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private ProcessResult run(String phase, List<String> command, String failureMessage) throws PythonException {
+        LOGGER.debug("Running {}.", command);
+
+        try (Timings.Phase ignored = timings.start(phase).process()) {
+            ProcessResult result = ProcessRunner.run(new ProcessBuilder(command));
+            result.log(LOGGER, LogLevel.DEBUG, LogLevel.WARN);
+
+            if (result.getExitCode() != 0) {
+                throw new PythonException(failureMessage + ". Return code " + result.getExitCode());
+            }
+            return result;
+        } catch (IOException e) {
+            throw new PythonException("Failed to execute python", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PythonException("Unexpected interruption while waiting for pre-commit install process", e);
+        }
+    }
+
+    @Override
+    public String getPythonExecutable() throws PythonException {
+        return getPythonInterpreter().getPath();
+    }
+
+    private synchronized PythonInterpreter getPythonInterpreter() throws PythonException {
+        if (pythonInterpreter == null) {
+            try (Timings.Phase ignored = timings.start("python discovery")) {
+                pythonInterpreter = pythonLocator.locate();
+            }
         }
+        return pythonInterpreter;
     }
 }
\ No newline at end of file
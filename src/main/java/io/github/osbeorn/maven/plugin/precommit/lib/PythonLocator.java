@@ -0,0 +1,269 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+final class PythonInterpreter {
+    private final String path;
+    private final String version;
+
+    PythonInterpreter(String path, String version) {
+        this.path = path;
+        this.version = version;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getVersion() {
+        return version;
+    }
+}
+
+/**
+ * Finds a compatible Python 3 interpreter. Candidates are probed concurrently and the first valid one in candidate
+ * order wins. The result is cached on disk, keyed by the {@code PATH} and the identity of the executable, so later
+ * builds do not have to spawn any process.
+ */
+final class PythonLocator {
+    static final String CACHE_FILE_NAME = "python-interpreter.properties";
+    static final String[] DEFAULT_CANDIDATES = new String[]{
+            "python3",
+            "python3.13", "python3.12", "python3.11", "python3.10", "python3.9", "python3.8",
+            "python"
+    };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PythonLocator.class);
+    private static final long PROBE_TIMEOUT_SECONDS = 10;
+
+    private static final String KEY_PATH_VARIABLE = "key.path";
+    private static final String KEY_CANDIDATES = "key.candidates";
+    private static final String CANDIDATE = "candidate";
+    private static final String PATH = "path";
+    private static final String VERSION = "version";
+    private static final String MODIFIED = "modified";
+    private static final String FILE_KEY = "fileKey";
+
+    private final File cacheFile;
+    private final List<String> candidates;
+
+    PythonLocator(File cacheFile, String pythonExecutable, String[] pythonCandidates) {
+        this.cacheFile = cacheFile;
+        this.candidates = new ArrayList<>();
+
+        if (pythonExecutable != null && !pythonExecutable.isEmpty()) {
+            // an explicitly configured interpreter is pinned, no other candidate is considered
+            candidates.add(pythonExecutable);
+        } else {
+            boolean configured = pythonCandidates != null && pythonCandidates.length > 0;
+            for (String candidate : configured ? pythonCandidates : DEFAULT_CANDIDATES) {
+                candidates.add(candidate);
+            }
+        }
+    }
+
+    PythonInterpreter locate() throws PythonException {
+        PythonInterpreter cached = readCache();
+        if (cached != null) {
+            LOGGER.debug("Using cached python binary `{}` ({}).", cached.getPath(), cached.getVersion());
+            return cached;
+        }
+
+        Map<String, File> executables = new LinkedHashMap<>();
+        for (String candidate : candidates) {
+            File executable = Executables.which(candidate);
+            if (executable == null) {
+                LOGGER.debug("Did not locate a python binary called `{}`.", candidate);
+            } else if (!executables.containsValue(executable)) {
+                executables.put(candidate, executable);
+            }
+        }
+
+        Map.Entry<String, String> located = probe(executables);
+        if (located != null) {
+            File executable = executables.get(located.getKey());
+            PythonInterpreter interpreter = new PythonInterpreter(executable.getPath(), located.getValue());
+            LOGGER.debug("Located python binary `{}` ({}).", interpreter.getPath(), interpreter.getVersion());
+            writeCache(located.getKey(), executable, interpreter);
+            return interpreter;
+        }
+
+        throw new PythonException(
+                "Could not find a compatible python 3 version on your system. 3.3 is the minimum supported python version. " +
+                "Please check you have a compatible " + String.join(", ", candidates) + " executable on your PATH"
+        );
+    }
+
+    /**
+     * Runs {@code --version} for all executables at once and returns the first valid candidate, in candidate order,
+     * together with its version. Probes of lower priority candidates are abandoned as soon as a higher priority one
+     * turns out to be valid.
+     */
+    private Map.Entry<String, String> probe(Map<String, File> executables) throws PythonException {
+        if (executables.isEmpty()) {
+            return null;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(executables.size(), runnable -> {
+            Thread thread = new Thread(runnable, "pre-commit-python-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Map<String, Future<String>> versions = new LinkedHashMap<>();
+            for (Map.Entry<String, File> executable : executables.entrySet()) {
+                versions.put(executable.getKey(), executor.submit(() -> probe(executable.getValue())));
+            }
+
+            for (Map.Entry<String, Future<String>> version : versions.entrySet()) {
+                try {
+                    String result = version.getValue().get();
+                    if (result != null) {
+                        return new AbstractMap.SimpleImmutableEntry<>(version.getKey(), result);
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.debug("Probing python binary `{}` failed.", version.getKey(), e);
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PythonException("Unexpected interruption while looking for python", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String probe(File executable) {
+        try {
+            ProcessRunner.ProcessResult result = ProcessRunner.run(
+                    new ProcessBuilder(executable.getPath(), "--version").redirectErrorStream(true),
+                    ProcessRunner.DEFAULT_BUFFER_LINES, PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            StringBuilder output = new StringBuilder();
+            for (ProcessRunner.OutputLine line : result.getOutput()) {
+                output.append(line.getText()).append('\n');
+            }
+            String version = output.toString().trim();
+
+            if (result.getExitCode() == 0 && checkVersion(version)) {
+                return version.split(" ")[1];
+            }
+            LOGGER.debug("Python binary `{}` is not compatible: {}", executable, version);
+        } catch (TimeoutException e) {
+            LOGGER.debug("Python binary `{}` did not answer within {} seconds.", executable, PROBE_TIMEOUT_SECONDS);
+        } catch (IOException e) {
+            LOGGER.debug("Could not run python binary `{}`.", executable, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static boolean checkVersion(String pythonOutput) {
+        try {
+            String versionString = pythonOutput.split(" ")[1];
+            int majorVersion = Integer.parseInt(versionString.split("\\.")[0]);
+            int minorVersion = Integer.parseInt(versionString.split("\\.")[1]);
+
+            return majorVersion > 3 || (majorVersion == 3 && minorVersion >= 3);
+        } catch (RuntimeException exception) {
+            LOGGER.debug("Unexpected python version output: {}", pythonOutput);
+            return false;
+        }
+    }
+
+    private PythonInterpreter readCache() {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(cacheFile)) {
+            properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+
+        if (!pathVariable().equals(properties.getProperty(KEY_PATH_VARIABLE))
+                || !String.join(",", candidates).equals(properties.getProperty(KEY_CANDIDATES))) {
+            return null;
+        }
+
+        String path = properties.getProperty(PATH);
+        File executable = Executables.which(properties.getProperty(CANDIDATE));
+        if (path == null || executable == null || !executable.getPath().equals(path)) {
+            return null;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(executable.toPath(), BasicFileAttributes.class);
+            if (!String.valueOf(attributes.lastModifiedTime().toMillis()).equals(properties.getProperty(MODIFIED))
+                    || !String.valueOf(attributes.fileKey()).equals(properties.getProperty(FILE_KEY))) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        return new PythonInterpreter(path, properties.getProperty(VERSION));
+    }
+
+    private void writeCache(String candidate, File executable, PythonInterpreter interpreter) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(executable.toPath(), BasicFileAttributes.class);
+
+            Properties properties = new Properties();
+            properties.setProperty(KEY_PATH_VARIABLE, pathVariable());
+            properties.setProperty(KEY_CANDIDATES, String.join(",", candidates));
+            properties.setProperty(CANDIDATE, candidate);
+            properties.setProperty(PATH, interpreter.getPath());
+            properties.setProperty(VERSION, interpreter.getVersion());
+            properties.setProperty(MODIFIED, String.valueOf(attributes.lastModifiedTime().toMillis()));
+            properties.setProperty(FILE_KEY, String.valueOf(attributes.fileKey()));
+
+            cacheFile.getParentFile().mkdirs();
+            // unique, as concurrent builds may share the install directory
+            File temporary = new File(cacheFile.getPath() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                try (OutputStream out = new FileOutputStream(temporary)) {
+                    properties.store(out, "pre-commit-maven-plugin python interpreter");
+                }
+                Files.move(temporary.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary.toPath());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache the python interpreter in {}.", cacheFile, e);
+        }
+    }
+
+    private static String pathVariable() {
+        String path = System.getenv("PATH");
+        return path == null ? "" : path;
+    }
+}
@@ -1,18 +1,41 @@
 package io.github.osbeorn.maven.plugin.precommit.lib;
 
+import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.List;
 
 public class RepositoryCacheResolver implements CacheResolver {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryCacheResolver.class);
     private static final String GROUP_ID = "io.github.osbeorn";
     private final RepositorySystemSession repositorySystemSession;
+    private final RepositorySystem repositorySystem;
+    private final List<RemoteRepository> remoteRepositories;
 
     public RepositoryCacheResolver(RepositorySystemSession repositorySystemSession) {
+        this(repositorySystemSession, null, Collections.emptyList());
+    }
+
+    /**
+     * Creates a resolver that also fetches entries missing from the local repository from the
+     * {@code remoteRepositories}, with the transport, mirrors, proxies and checksum policies of the session.
+     */
+    public RepositoryCacheResolver(RepositorySystemSession repositorySystemSession,
+                                   RepositorySystem repositorySystem, List<RemoteRepository> remoteRepositories) {
         this.repositorySystemSession = repositorySystemSession;
+        this.repositorySystem = repositorySystem;
+        this.remoteRepositories = remoteRepositories;
     }
 
     @Override
@@ -27,6 +50,30 @@ public class RepositoryCacheResolver implements CacheResolver {
         return localArtifact;
     }
 
+    @Override
+    public File fetch(CacheDescriptor cacheDescriptor) {
+        if (repositorySystem == null) {
+            return null;
+        }
+
+        ArtifactRequest request = new ArtifactRequest(createArtifact(cacheDescriptor), remoteRepositories, null);
+        try {
+            ArtifactResult result = repositorySystem.resolveArtifact(repositorySystemSession, request);
+            LOGGER.debug("Resolved {} from {}.", result.getArtifact(), result.getRepository());
+            return result.getArtifact().getFile();
+        } catch (ArtifactResolutionException e) {
+            LOGGER.info("Could not resolve {} from the remote repositories: {}", request.getArtifact(), e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public File getIndexFile() {
+        LocalRepositoryManager manager = repositorySystemSession.getLocalRepositoryManager();
+        File groupDirectory = new File(manager.getRepository().getBasedir(), GROUP_ID.replace('.', File.separatorChar));
+        return new File(groupDirectory, "pre-commit-" + CachePruner.INDEX_FILE_NAME);
+    }
+
     private DefaultArtifact createArtifact(CacheDescriptor cacheDescriptor) {
         String version = cacheDescriptor.getVersion().replaceAll("^v", "");
 
@@ -0,0 +1,11 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+public final class RunException extends Exception {
+    RunException(String message) {
+        super(message);
+    }
+
+    RunException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,109 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Outcome of running the hooks on one shard of the files. It can be persisted so that the results of all shards
+ * can be merged by a later build.
+ */
+public final class RunResult {
+    private static final String SHARD_INDEX = "shard.index";
+    private static final String SHARD_COUNT = "shard.count";
+    private static final String EXIT_CODE = "exitCode";
+    private static final String FILES = "files";
+    private static final String BATCHES = "batches";
+    private static final String DURATION = "durationMillis";
+
+    private final int shardIndex;
+    private final int shardCount;
+    private final int exitCode;
+    private final int files;
+    private final int batches;
+    private final long durationMillis;
+
+    RunResult(int shardIndex, int shardCount, int exitCode, int files, int batches, long durationMillis) {
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.exitCode = exitCode;
+        this.files = files;
+        this.batches = batches;
+        this.durationMillis = durationMillis;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Name of the result file of a shard, unique among the shards of a run.
+     */
+    public String getFileName() {
+        return "shard-" + shardIndex + ".properties";
+    }
+
+    public static RunResult read(File file) throws RunException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            return new RunResult(
+                    Integer.parseInt(properties.getProperty(SHARD_INDEX)),
+                    Integer.parseInt(properties.getProperty(SHARD_COUNT)),
+                    Integer.parseInt(properties.getProperty(EXIT_CODE)),
+                    Integer.parseInt(properties.getProperty(FILES)),
+                    Integer.parseInt(properties.getProperty(BATCHES)),
+                    Long.parseLong(properties.getProperty(DURATION))
+            );
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RunException("Could not read the run result " + file, e);
+        }
+    }
+
+    public void write(File file) throws RunException {
+        Properties properties = new Properties();
+        properties.setProperty(SHARD_INDEX, String.valueOf(shardIndex));
+        properties.setProperty(SHARD_COUNT, String.valueOf(shardCount));
+        properties.setProperty(EXIT_CODE, String.valueOf(exitCode));
+        properties.setProperty(FILES, String.valueOf(files));
+        properties.setProperty(BATCHES, String.valueOf(batches));
+        properties.setProperty(DURATION, String.valueOf(durationMillis));
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            try (OutputStream out = new FileOutputStream(temporary)) {
+                properties.store(out, "pre-commit-maven-plugin run result");
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RunException("Could not write the run result " + file, e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each phase of an installation takes. Every phase is also emitted as a JDK Flight Recorder event
+ * where the JVM supports it. The recorded phases can be summarized on a single line and written as JSON.
+ */
+final class Timings {
+
+    private final long start = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * Starts a phase, which is recorded once it is closed.
+     */
+    Phase start(String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Returns a single line with the total duration and the durations of the phases, summed up by name.
+     */
+    synchronized String summary() {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        int processes = 0;
+        for (Phase phase : phases) {
+            durations.merge(phase.name, phase.durationNanos, Long::sum);
+            processes += phase.processes;
+        }
+
+        StringBuilder summary = new StringBuilder()
+                .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).append(" ms");
+        String separator = ": ";
+        for (Map.Entry<String, Long> duration : durations.entrySet()) {
+            summary.append(separator).append(duration.getKey()).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(duration.getValue())).append(" ms");
+            separator = ", ";
+        }
+        return summary.append(", ").append(processes).append(processes == 1 ? " process" : " processes").toString();
+    }
+
+    /**
+     * Writes the recorded phases to {@code file} as JSON.
+     */
+    synchronized void write(File file) throws IOException {
+        StringBuilder json = new StringBuilder("{\n")
+                .append("  \"durationMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .append(",\n  \"phases\": [");
+        int processes = 0;
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            processes += phase.processes;
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": \"").append(escape(phase.name)).append('"')
+                    .append(", \"durationMillis\": ").append(TimeUnit.NANOSECONDS.toMillis(phase.durationNanos))
+                    .append(", \"bytes\": ").append(phase.bytes)
+                    .append(", \"cacheHit\": ").append(phase.cacheHit)
+                    .append(", \"processes\": ").append(phase.processes)
+                    .append('}');
+        }
+        json.append(phases.isEmpty() ? "]" : "\n  ]")
+                .append(",\n  \"processes\": ").append(processes)
+                .append("\n}\n");
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        directory.mkdirs();
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temporary.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private synchronized void record(Phase phase) {
+        phases.add(phase);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    final class Phase implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final Object event;
+        private long durationNanos;
+        private long bytes;
+        private Boolean cacheHit;
+        private int processes;
+
+        private Phase(String name) {
+            this.name = name;
+            this.event = PhaseEvent.isRecording() ? PhaseEvent.begin(name) : null;
+        }
+
+        Phase bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        Phase cacheHit(boolean cacheHit) {
+            this.cacheHit = cacheHit;
+            return this;
+        }
+
+        Phase process() {
+            processes++;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            durationNanos = System.nanoTime() - start;
+            if (event != null) {
+                PhaseEvent.commit(event, bytes, cacheHit, processes);
+            }
+            record(this);
+        }
+    }
+}
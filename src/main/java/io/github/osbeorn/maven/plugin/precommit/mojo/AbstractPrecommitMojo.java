@@ -1,13 +1,24 @@
 package io.github.osbeorn.maven.plugin.precommit.mojo;
 
+import io.github.osbeorn.maven.plugin.precommit.lib.InstallMode;
 import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
 import io.github.osbeorn.maven.plugin.precommit.lib.RepositoryCacheResolver;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public abstract class AbstractPrecommitMojo extends AbstractMojo {
 
@@ -23,35 +34,143 @@ public abstract class AbstractPrecommitMojo extends AbstractMojo {
     @Parameter(defaultValue = "${basedir}/.pre-commit-files", property = "installDirectory")
     protected File installDirectory;
 
+    /**
+     * Path or name of the Python interpreter to use. When set, no other interpreter is considered.
+     */
+    @Parameter(property = "pythonExecutable")
+    protected String pythonExecutable;
+
+    /**
+     * Names of the Python interpreters to look for on the PATH, in order of preference. Defaults to
+     * {@code python3}, {@code python3.13} down to {@code python3.8} and {@code python}.
+     */
+    @Parameter(property = "pythonCandidates")
+    protected String[] pythonCandidates;
+
+    /**
+     * How pre-commit is run: {@code ARCHIVE} runs the downloaded archive directly, {@code UNPACKED} runs it from a
+     * compiled copy extracted next to it, {@code VIRTUALENV} installs it into a virtualenv in the install directory
+     * that is reused until the version or the interpreter changes.
+     */
+    @Parameter(property = "installMode", defaultValue = "ARCHIVE")
+    protected InstallMode installMode;
+
+    /**
+     * Whether to resolve the pre-commit archive as {@code io.github.osbeorn:pre-commit:<version>:pyz} from the
+     * remote repositories of the build before downloading it. This applies the mirrors, proxies and checksum
+     * policies of the Maven settings, so the archive can be published once to an internal repository.
+     */
+    @Parameter(property = "resolveFromRepositories", defaultValue = "false")
+    protected boolean resolveFromRepositories;
+
     @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
     private RepositorySystemSession repositorySystemSession;
 
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true)
+    private List<RemoteRepository> remoteRepositories;
+
+    @Component
+    private RepositorySystem repositorySystem;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
     /**
      * Implemented by children to define an execution
      */
-    protected abstract void execute(PluginFactory pluginFactory) throws MojoExecutionException;
+    protected abstract void execute(PluginFactory pluginFactory) throws MojoExecutionException, MojoFailureException;
 
     /**
      * Implemented by children to determine if this execution should be skipped.
      */
     protected abstract boolean skipExecution();
 
+    /**
+     * Overridden by children that run once per Git repository in a reactor, instead of once per module.
+     */
+    protected boolean isOncePerGitRoot() {
+        return false;
+    }
+
+    /**
+     * Returns the parameters that change what an execution does. Executions that run once per Git repository only
+     * skip each other when their parameters are equal, so modules configured differently still run. Children add
+     * their own parameters.
+     */
+    protected Map<String, Object> getExecutionParameters() {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("pythonExecutable", pythonExecutable);
+        parameters.put("pythonCandidates", Arrays.toString(pythonCandidates));
+        parameters.put("installMode", installMode);
+        parameters.put("resolveFromRepositories", resolveFromRepositories);
+        return parameters;
+    }
+
+    /**
+     * Returns the directory to install into or run from. Overridden by children that use the installation made by
+     * another module of the same Git repository.
+     */
+    File getInstallDirectory(ReactorExecutions executions, File gitRoot) {
+        return installDirectory;
+    }
+
+    /**
+     * Called after this execution ran once for the Git repository {@code gitRoot}. Overridden by children that
+     * share its result with the other modules.
+     */
+    void executed(ReactorExecutions executions, File gitRoot) {
+    }
+
     @Override
-    public void execute() throws MojoExecutionException {
+    public void execute() throws MojoExecutionException, MojoFailureException {
         if (!skipExecution()) {
             if (installDirectory == null) {
                 installDirectory = workingDirectory;
             }
 
-            execute(
-                    new PluginFactory(
-                            workingDirectory,
-                            installDirectory,
-                            new RepositoryCacheResolver(repositorySystemSession)
-                    )
-            );
+            File gitRoot = isOncePerGitRoot() ? getGitRoot() : null;
+            if (gitRoot == null) {
+                execute(newPluginFactory());
+                return;
+            }
+
+            ReactorExecutions executions = ReactorExecutions.get(repositorySystemSession);
+            installDirectory = getInstallDirectory(executions, gitRoot);
+            PluginFactory pluginFactory = newPluginFactory();
+            String key = mojoExecution.getGoal() + " (" + mojoExecution.getExecutionId() + ") in " + gitRoot
+                    + " with " + getExecutionParameters();
+            boolean executed = executions.runOnce(key, () -> {
+                execute(pluginFactory);
+                executed(executions, gitRoot);
+            });
+            if (!executed) {
+                getLog().info("Already executed " + key + ", skipping.");
+            }
         } else {
             getLog().info("Skipping execution.");
         }
     }
+
+    private PluginFactory newPluginFactory() {
+        return new PluginFactory(
+                workingDirectory,
+                installDirectory,
+                resolveFromRepositories
+                        ? new RepositoryCacheResolver(repositorySystemSession, repositorySystem, remoteRepositories)
+                        : new RepositoryCacheResolver(repositorySystemSession)
+        )
+                .setPythonExecutable(pythonExecutable)
+                .setPythonCandidates(pythonCandidates)
+                .setInstallMode(installMode)
+                .setOffline(repositorySystemSession.isOffline());
+    }
+
+    private File getGitRoot() {
+        try {
+            return new PluginFactory(workingDirectory, installDirectory).getGitRoot();
+        } catch (IOException e) {
+            getLog().debug("Could not find the Git repository of " + workingDirectory, e);
+            return null;
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
+import io.github.osbeorn.maven.plugin.precommit.lib.RunException;
+import io.github.osbeorn.maven.plugin.precommit.lib.RunResult;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Goal which merges the results written by sharded executions of the run goal
+ */
+@Mojo(name = "aggregate", defaultPhase = LifecyclePhase.VERIFY)
+public class AggregateMojo extends AbstractPrecommitMojo {
+
+    /**
+     * Directory containing the result files of all shards.
+     */
+    @Parameter(property = "resultDirectory", required = true)
+    private File resultDirectory;
+
+    /**
+     * Skips execution of this mojo.
+     */
+    @Parameter(property = "skip.aggregate", alias = "skip.aggregate", defaultValue = "${skip.aggregate}")
+    private boolean skip;
+
+    @Override
+    public void execute(PluginFactory pluginFactory) throws MojoExecutionException, MojoFailureException {
+        File[] resultFiles = resultDirectory.listFiles((dir, name) -> name.startsWith("shard-")
+                && name.endsWith(".properties"));
+        if (resultFiles == null || resultFiles.length == 0) {
+            throw new MojoExecutionException("No run results found in " + resultDirectory);
+        }
+
+        SortedMap<Integer, RunResult> results = new TreeMap<>();
+        for (File resultFile : resultFiles) {
+            try {
+                RunResult result = RunResult.read(resultFile);
+                results.put(result.getShardIndex(), result);
+            } catch (RunException e) {
+                throw new MojoExecutionException("Failed to aggregate the run results", e);
+            }
+        }
+
+        int shardCount = results.get(results.firstKey()).getShardCount();
+        int files = 0;
+        long durationMillis = 0;
+        List<Integer> failed = new ArrayList<>();
+        for (RunResult result : results.values()) {
+            if (result.getShardCount() != shardCount) {
+                throw new MojoExecutionException("The run results in " + resultDirectory
+                        + " belong to different shard counts, " + shardCount + " and " + result.getShardCount());
+            }
+            files += result.getFiles();
+            durationMillis = Math.max(durationMillis, result.getDurationMillis());
+            if (result.getExitCode() != 0) {
+                failed.add(result.getShardIndex());
+            }
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            if (!results.containsKey(shardIndex)) {
+                missing.add(shardIndex);
+            }
+        }
+
+        getLog().info(String.format("%d of %d shards checked %d files, the slowest in %d ms.",
+                results.size(), shardCount, files, durationMillis));
+        if (!missing.isEmpty()) {
+            throw new MojoFailureException("Missing the run results of shards " + missing);
+        }
+        if (!failed.isEmpty()) {
+            throw new MojoFailureException("pre-commit hooks failed in shards " + failed);
+        }
+    }
+
+    @Override
+    protected boolean skipExecution() {
+        return skip;
+    }
+}
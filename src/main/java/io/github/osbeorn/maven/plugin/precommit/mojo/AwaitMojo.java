@@ -0,0 +1,40 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.InstallationException;
+import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Goal which waits for the hook environments the install goal started installing in the background. The build
+ * waits for them anyway before it ends, this goal waits for them earlier, in the module it is bound in.
+ */
+@Mojo(name = "await", defaultPhase = LifecyclePhase.VERIFY)
+public class AwaitMojo extends AbstractPrecommitMojo {
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * Skips execution of this mojo.
+     */
+    @Parameter(property = "skip.await", alias = "skip.await", defaultValue = "${skip.await}")
+    private boolean skip;
+
+    @Override
+    public void execute(PluginFactory pluginFactory) throws MojoExecutionException {
+        try {
+            BackgroundInstalls.get(session).join();
+        } catch (InstallationException e) {
+            throw new MojoExecutionException("Failed to install the pre-commit hook environments", e);
+        }
+    }
+
+    @Override
+    protected boolean skipExecution() {
+        return skip;
+    }
+}
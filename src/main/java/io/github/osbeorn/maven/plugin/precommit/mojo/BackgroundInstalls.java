@@ -0,0 +1,91 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.BackgroundInstall;
+import io.github.osbeorn.maven.plugin.precommit.lib.InstallationException;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The hook environments started in the background in this Maven session. The run and await goals join them before
+ * they continue, and the build joins the rest when the session ends, where a failure fails the build. They are kept
+ * in the data of the repository session, like {@link ReactorExecutions}. If the session end is never observed, for
+ * example when Maven is embedded, they are joined when the JVM exits, where failures can only be logged.
+ */
+final class BackgroundInstalls {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackgroundInstalls.class);
+
+    private final List<BackgroundInstall> installs = new CopyOnWriteArrayList<>();
+    private final Thread shutdownHook = new Thread(this::joinQuietly, "pre-commit-hook-environments");
+    private volatile boolean failureReported;
+
+    private BackgroundInstalls() {
+    }
+
+    static BackgroundInstalls get(MavenSession session) {
+        return (BackgroundInstalls) session.getRepositorySession().getData().computeIfAbsent(BackgroundInstalls.class,
+                () -> {
+                    BackgroundInstalls backgroundInstalls = new BackgroundInstalls();
+                    Runtime.getRuntime().addShutdownHook(backgroundInstalls.shutdownHook);
+                    SessionEnd.get(session).add(backgroundInstalls::joinAtSessionEnd);
+                    return backgroundInstalls;
+                });
+    }
+
+    void add(BackgroundInstall install) {
+        installs.add(install);
+    }
+
+    /**
+     * Joins all hook environments started so far, and throws the first failure once all of them are joined.
+     */
+    void join() throws InstallationException {
+        InstallationException failure = null;
+        for (BackgroundInstall install : installs) {
+            try {
+                install.join();
+            } catch (InstallationException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            failureReported = true;
+            throw failure;
+        }
+    }
+
+    private void joinAtSessionEnd(MavenSession session) {
+        // a goal that joined them failed the build already
+        boolean reported = failureReported;
+        try {
+            join();
+        } catch (InstallationException e) {
+            if (!reported) {
+                LOGGER.error(e.getMessage());
+                session.getResult().addException(e);
+            }
+        }
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // already shutting down
+        }
+    }
+
+    private void joinQuietly() {
+        for (BackgroundInstall install : installs) {
+            try {
+                install.join();
+            } catch (InstallationException e) {
+                LOGGER.error(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.CachePruner;
+import io.github.osbeorn.maven.plugin.precommit.lib.InstallationException;
+import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Goal which evicts the least recently used pre-commit versions from the cache and the install directory
+ */
+@Mojo(name = "cache-prune", requiresProject = false)
+public class CachePruneMojo extends AbstractPrecommitMojo {
+
+    /**
+     * Maximum size of the cached pre-commit versions, for example '500M', in the cache and in the install directory.
+     * No limit by default.
+     */
+    @Parameter(property = "maxCacheSize")
+    private String maxCacheSize;
+
+    /**
+     * Maximum number of pre-commit versions kept in the cache and in the install directory, 0 keeps all versions.
+     */
+    @Parameter(property = "maxCachedVersions", defaultValue = "5")
+    private int maxCachedVersions;
+
+    /**
+     * Skips execution of this mojo.
+     */
+    @Parameter(property = "skip.cache-prune", alias = "skip.cache-prune", defaultValue = "${skip.cache-prune}")
+    private boolean skip;
+
+    @Override
+    public void execute(PluginFactory pluginFactory) throws MojoExecutionException {
+        try {
+            pluginFactory.getCachePruner()
+                    .setMaxSize(CachePruner.parseSize(maxCacheSize))
+                    .setMaxVersions(maxCachedVersions)
+                    .prune();
+        } catch (InstallationException e) {
+            throw new MojoExecutionException("Failed to prune the pre-commit cache", e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid maxCacheSize " + maxCacheSize, e);
+        }
+    }
+
+    @Override
+    protected boolean skipExecution() {
+        return skip;
+    }
+}
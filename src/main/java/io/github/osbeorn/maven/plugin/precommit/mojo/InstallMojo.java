@@ -1,13 +1,24 @@
 package io.github.osbeorn.maven.plugin.precommit.mojo;
 
+import io.github.osbeorn.maven.plugin.precommit.lib.BackgroundInstall;
 import io.github.osbeorn.maven.plugin.precommit.lib.BinaryInstaller;
+import io.github.osbeorn.maven.plugin.precommit.lib.CacheLock;
+import io.github.osbeorn.maven.plugin.precommit.lib.CachePruner;
 import io.github.osbeorn.maven.plugin.precommit.lib.InstallationException;
+import io.github.osbeorn.maven.plugin.precommit.lib.Materialization;
 import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Goal which downloads and activates pre-commit goals
  */
@@ -21,6 +32,21 @@ public class InstallMojo extends AbstractPrecommitMojo {
     @Parameter(property = "downloadRoot", defaultValue = BinaryInstaller.DEFAULT_DOWNLOAD_ROOT)
     private String downloadRoot;
 
+    /**
+     * Download roots to use instead of {@code downloadRoot}, for example an internal repository, a file share and
+     * GitHub. The roots are probed concurrently and the archive is downloaded from the fastest one, continuing from
+     * the next one if a download fails. The latency and failures of every host are remembered across builds.
+     */
+    @Parameter(property = "downloadRoots")
+    private String[] downloadRoots;
+
+    /**
+     * Number of connections used to download the archive. With more than one, large archives are split into
+     * ranges that are downloaded concurrently, if the server supports range requests.
+     */
+    @Parameter(property = "downloadConnections", defaultValue = "1")
+    private int downloadConnections;
+
     /**
      * The precommitVersion of the pre-commit binary to install. IMPORTANT! Most precommitVersion names start with 'v', for example
      * 'v1.10.1'
@@ -28,6 +54,13 @@ public class InstallMojo extends AbstractPrecommitMojo {
     @Parameter(property = "precommitVersion", required = true)
     private String precommitVersion;
 
+    /**
+     * The SHA-256 checksum the pre-commit archive must have. When set, the checksum published next to the download
+     * is not fetched.
+     */
+    @Parameter(property = "expectedSha256")
+    private String expectedSha256;
+
     /**
      * The hook types to install. Defaults to pre-commit only.
      * See <a href="https://pre-commit.com/#supported-git-hooks">for possible options</a>
@@ -35,6 +68,86 @@ public class InstallMojo extends AbstractPrecommitMojo {
     @Parameter(property = "hookTypes", defaultValue = "pre-commit")
     private String[] hookTypes;
 
+    /**
+     * Runs the full installation even if the recorded install state shows that nothing has changed since the last
+     * successful installation.
+     */
+    @Parameter(property = "forceInstall", defaultValue = "false")
+    private boolean forceInstall;
+
+    /**
+     * Directory of a content-addressed artifact store shared by all projects, for example
+     * {@code ${settings.localRepository}/.cache/pre-commit-maven-plugin}. When set, the pre-commit archive is added
+     * to it once and then linked into each project's install directory. Not set by default, the archive is copied.
+     */
+    @Parameter(property = "storeDirectory")
+    private File storeDirectory;
+
+    /**
+     * How the stored archive is placed into the install directory: {@code HARDLINK}, {@code SYMLINK},
+     * {@code REFLINK} or {@code COPY}. Strategies that are not supported fall back to a copy.
+     */
+    @Parameter(property = "materialization", defaultValue = "HARDLINK")
+    private Materialization materialization;
+
+    /**
+     * Restores the hook environments pre-commit builds in {@code PRE_COMMIT_HOME} from a snapshot in the cache
+     * before installing the hooks, and creates the snapshot after the first installation. Snapshots are keyed by
+     * the pre-commit version, the configuration, the Python interpreter and the platform. They are only restored
+     * when {@code PRE_COMMIT_HOME} is empty, as on fresh CI agents.
+     */
+    @Parameter(property = "cacheHookEnvironments", defaultValue = "false")
+    private boolean cacheHookEnvironments;
+
+    /**
+     * File the durations of the installation phases are written to as JSON, for example
+     * {@code ${project.build.directory}/pre-commit-timings.json}. A summary is always logged.
+     */
+    @Parameter(property = "timingsFile")
+    private File timingsFile;
+
+    /**
+     * Maximum size of the cached pre-commit versions, for example '500M', in the cache and in the install directory.
+     * The least recently used versions are evicted first. No limit by default.
+     */
+    @Parameter(property = "maxCacheSize")
+    private String maxCacheSize;
+
+    /**
+     * Maximum number of pre-commit versions kept in the cache and in the install directory. The least recently used
+     * versions are evicted first. No limit by default.
+     */
+    @Parameter(property = "maxCachedVersions", defaultValue = "0")
+    private int maxCachedVersions;
+
+    /**
+     * Installs once per Git repository in a multi-module build, in the first module that runs this goal. The other
+     * modules of the same repository skip it if they install the same version, hook types and checksum with the
+     * same Python settings, so the plugin can be inherited by all modules, and their run goal uses that
+     * installation. Modules that are configured differently install again.
+     */
+    @Parameter(property = "oncePerGitRoot", defaultValue = "true")
+    private boolean oncePerGitRoot;
+
+    /**
+     * Installs the Git hooks and then builds the hook environments in a background process while the build
+     * continues. The run goal waits for them before it runs, and the build waits for them before it ends and fails
+     * if they could not be installed. Add the {@code await} goal to wait for them earlier.
+     */
+    @Parameter(property = "backgroundHookEnvironments", defaultValue = "false")
+    private boolean backgroundHookEnvironments;
+
+    /**
+     * Leaves the background process building the hook environments running when the build ends, instead of
+     * waiting for it. Its output is written to {@code hook-environments.log} in the install directory. The next
+     * build installs again unless the process succeeded.
+     */
+    @Parameter(property = "detachHookEnvironments", defaultValue = "false")
+    private boolean detachHookEnvironments;
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
     /**
      * Skips execution of this mojo.
      */
@@ -44,13 +157,36 @@ public class InstallMojo extends AbstractPrecommitMojo {
     @Override
     public void execute(PluginFactory pluginFactory) throws MojoExecutionException {
         try {
-            pluginFactory.getBinaryInstaller()
+            BinaryInstaller installer = pluginFactory.setDownloadConnections(downloadConnections)
+                    .getBinaryInstaller()
                     .setDownloadRoot(downloadRoot)
+                    .setDownloadRoots(downloadRoots)
                     .setVersion(precommitVersion)
                     .setHookTypes(hookTypes)
-                    .install();
+                    .setForce(forceInstall)
+                    .setExpectedSha256(expectedSha256)
+                    .setStoreDirectory(storeDirectory)
+                    .setMaterialization(materialization)
+                    .setCacheHookEnvironments(cacheHookEnvironments)
+                    .setTimingsFile(timingsFile)
+                    .setMaxCacheSize(CachePruner.parseSize(maxCacheSize))
+                    .setMaxCachedVersions(maxCachedVersions)
+                    .setBackgroundEnvironments(backgroundHookEnvironments)
+                    .setDetachEnvironments(detachHookEnvironments);
+            installer.install();
+
+            BackgroundInstall backgroundInstall = installer.getBackgroundInstall();
+            if (backgroundInstall != null) {
+                BackgroundInstalls.get(session).add(backgroundInstall);
+            }
+
+            // the installed version stays in use until the build ends, so that the run goal finds it
+            List<CacheLock> uses = new ArrayList<>(installer.getUses());
+            SessionEnd.get(session).add(ended -> CacheLock.releaseAll(uses));
         } catch (InstallationException e) {
             throw new MojoExecutionException("Failed to install pre-commit", e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid maxCacheSize " + maxCacheSize, e);
         }
     }
 
@@ -58,4 +194,26 @@ public class InstallMojo extends AbstractPrecommitMojo {
     protected boolean skipExecution() {
         return skip;
     }
+
+    @Override
+    protected boolean isOncePerGitRoot() {
+        return oncePerGitRoot;
+    }
+
+    @Override
+    void executed(ReactorExecutions executions, File gitRoot) {
+        executions.putInstallDirectory(gitRoot, precommitVersion, installDirectory);
+    }
+
+    @Override
+    protected Map<String, Object> getExecutionParameters() {
+        Map<String, Object> parameters = super.getExecutionParameters();
+        parameters.put("precommitVersion", precommitVersion);
+        parameters.put("hookTypes", Arrays.toString(hookTypes));
+        parameters.put("expectedSha256", expectedSha256);
+        parameters.put("forceInstall", forceInstall);
+        parameters.put("cacheHookEnvironments", cacheHookEnvironments);
+        parameters.put("backgroundHookEnvironments", backgroundHookEnvironments);
+        return parameters;
+    }
 }
@@ -0,0 +1,65 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.BinaryInstaller;
+import io.github.osbeorn.maven.plugin.precommit.lib.InstallationException;
+import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Goal which downloads pre-commit versions into the local repository without installing them
+ */
+@Mojo(name = "prefetch", requiresProject = false)
+public class PrefetchMojo extends AbstractPrecommitMojo {
+
+    /**
+     * The pre-commit versions to download, for example 'v3.4.0'.
+     */
+    @Parameter(property = "precommitVersions", required = true)
+    private String[] precommitVersions;
+
+    /**
+     * Where to download the archives from. The archives are downloaded from the fastest root, continuing from the
+     * next one if a download fails.
+     */
+    @Parameter(property = "downloadRoots", defaultValue = BinaryInstaller.DEFAULT_DOWNLOAD_ROOT)
+    private String[] downloadRoots;
+
+    /**
+     * Maximum number of versions downloaded at once.
+     */
+    @Parameter(property = "concurrency", defaultValue = "4")
+    private int concurrency;
+
+    /**
+     * Number of connections used to download each archive.
+     */
+    @Parameter(property = "downloadConnections", defaultValue = "1")
+    private int downloadConnections;
+
+    /**
+     * Skips execution of this mojo.
+     */
+    @Parameter(property = "skip.prefetch", alias = "skip.prefetch", defaultValue = "${skip.prefetch}")
+    private boolean skip;
+
+    @Override
+    public void execute(PluginFactory pluginFactory) throws MojoExecutionException {
+        try {
+            pluginFactory.setDownloadConnections(downloadConnections)
+                    .getBinaryPrefetcher()
+                    .setVersions(precommitVersions)
+                    .setDownloadRoots(downloadRoots)
+                    .setConcurrency(concurrency)
+                    .prefetch();
+        } catch (InstallationException e) {
+            throw new MojoExecutionException("Failed to prefetch pre-commit", e);
+        }
+    }
+
+    @Override
+    protected boolean skipExecution() {
+        return skip;
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.eclipse.aether.RepositorySystemSession;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Remembers which executions already ran in this Maven session, so that a goal inherited by every module of a
+ * reactor runs once per Git repository. It is kept in the data of the repository session, which lives as long as
+ * the Maven session and is shared by all modules and build threads.
+ */
+final class ReactorExecutions {
+    private final ConcurrentMap<String, CompletableFuture<Void>> executions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, File> installDirectories = new ConcurrentHashMap<>();
+
+    private ReactorExecutions() {
+    }
+
+    static ReactorExecutions get(RepositorySystemSession session) {
+        // keyed by the class, as each version of the plugin has its own class loader
+        return (ReactorExecutions) session.getData().computeIfAbsent(ReactorExecutions.class, ReactorExecutions::new);
+    }
+
+    /**
+     * Runs {@code execution} unless an execution with the same {@code key} ran before. If it is still running in
+     * another build thread, waits for it. Returns whether {@code execution} ran, and rethrows the failure of the
+     * earlier execution.
+     */
+    boolean runOnce(String key, Execution execution) throws MojoExecutionException, MojoFailureException {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture<Void> earlier = executions.putIfAbsent(key, result);
+
+        if (earlier == null) {
+            try {
+                execution.run();
+                result.complete(null);
+                return true;
+            } catch (MojoExecutionException | MojoFailureException | RuntimeException e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            earlier.get();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for " + key, e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("The execution for " + key + " failed in an earlier module",
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Records that {@code version} was installed for the Git repository {@code gitRoot} into
+     * {@code installDirectory}, for the modules that skipped the installation.
+     */
+    void putInstallDirectory(File gitRoot, String version, File installDirectory) {
+        installDirectories.put(gitRoot + " " + version, installDirectory);
+    }
+
+    /**
+     * Returns the directory {@code version} was installed into for the Git repository {@code gitRoot} in this
+     * session, or {@code null} if it was not installed once per Git repository.
+     */
+    File getInstallDirectory(File gitRoot, String version) {
+        return installDirectories.get(gitRoot + " " + version);
+    }
+
+    interface Execution {
+        void run() throws MojoExecutionException, MojoFailureException;
+    }
+}
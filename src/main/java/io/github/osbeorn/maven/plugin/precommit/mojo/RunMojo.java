@@ -0,0 +1,159 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import io.github.osbeorn.maven.plugin.precommit.lib.InstallationException;
+import io.github.osbeorn.maven.plugin.precommit.lib.PluginFactory;
+import io.github.osbeorn.maven.plugin.precommit.lib.RunException;
+import io.github.osbeorn.maven.plugin.precommit.lib.RunResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Goal which runs the installed pre-commit hooks on the files of the repository
+ */
+@Mojo(name = "run", defaultPhase = LifecyclePhase.VERIFY)
+public class RunMojo extends AbstractPrecommitMojo {
+
+    /**
+     * The precommitVersion of the installed pre-commit binary to run.
+     */
+    @Parameter(property = "precommitVersion", required = true)
+    private String precommitVersion;
+
+    /**
+     * The files to check, relative to the working directory. Defaults to all files tracked by Git.
+     */
+    @Parameter(property = "files")
+    private String[] files;
+
+    /**
+     * Runs only the hook with this id.
+     */
+    @Parameter(property = "hook")
+    private String hook;
+
+    /**
+     * Runs the hooks of this stage, for example {@code pre-push}.
+     */
+    @Parameter(property = "hookStage")
+    private String hookStage;
+
+    /**
+     * Maximum number of pre-commit processes running at once. Defaults to the number of available processors.
+     */
+    @Parameter(property = "concurrency", defaultValue = "0")
+    private int concurrency;
+
+    /**
+     * Checks only the files that changed since they last passed with the same configuration and pre-commit version.
+     */
+    @Parameter(property = "incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Index of the shard of the files to check, from 0 to {@code shardCount - 1}.
+     */
+    @Parameter(property = "shardIndex", defaultValue = "0")
+    private int shardIndex;
+
+    /**
+     * Number of shards the files are split into, for example to check them on several machines. Every file is
+     * checked by exactly one shard.
+     */
+    @Parameter(property = "shardCount", defaultValue = "1")
+    private int shardCount;
+
+    /**
+     * Directory to write the result of this shard to, to be merged by the {@code aggregate} goal.
+     */
+    @Parameter(property = "resultDirectory")
+    private File resultDirectory;
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * Skips execution of this mojo.
+     */
+    @Parameter(property = "skip.run", alias = "skip.run", defaultValue = "${skip.run}")
+    private boolean skip;
+
+    @Override
+    public void execute(PluginFactory pluginFactory) throws MojoExecutionException, MojoFailureException {
+        // pre-commit would install the hook environments the background process is still installing
+        try {
+            BackgroundInstalls.get(session).join();
+        } catch (InstallationException e) {
+            throw new MojoExecutionException("Failed to install the pre-commit hook environments", e);
+        }
+
+        RunResult result;
+        try {
+            result = pluginFactory.getBinaryRunner()
+                    .setVersion(precommitVersion)
+                    .setFiles(files)
+                    .setHookId(hook)
+                    .setHookStage(hookStage)
+                    .setConcurrency(concurrency)
+                    .setIncremental(incremental)
+                    .setShard(shardIndex, shardCount)
+                    .run();
+
+            if (resultDirectory != null) {
+                result.write(new File(resultDirectory, result.getFileName()));
+            }
+        } catch (RunException e) {
+            throw new MojoExecutionException("Failed to run pre-commit", e);
+        }
+
+        if (result.getExitCode() != 0) {
+            throw new MojoFailureException("pre-commit hooks failed. Return code " + result.getExitCode());
+        }
+    }
+
+    @Override
+    protected boolean skipExecution() {
+        return skip;
+    }
+
+    /**
+     * Runs once per Git repository and working directory in a multi-module build, in the first module that runs this
+     * goal. Modules configured differently run again.
+     */
+    @Override
+    protected boolean isOncePerGitRoot() {
+        return true;
+    }
+
+    /**
+     * Runs the installation made by another module if the install goal ran once per Git repository.
+     */
+    @Override
+    File getInstallDirectory(ReactorExecutions executions, File gitRoot) {
+        File installed = executions.getInstallDirectory(gitRoot, precommitVersion);
+        return installed != null ? installed : super.getInstallDirectory(executions, gitRoot);
+    }
+
+    @Override
+    protected Map<String, Object> getExecutionParameters() {
+        Map<String, Object> parameters = super.getExecutionParameters();
+        parameters.put("workingDirectory", workingDirectory);
+        parameters.put("installDirectory", installDirectory);
+        parameters.put("precommitVersion", precommitVersion);
+        parameters.put("files", Arrays.toString(files));
+        parameters.put("hook", hook);
+        parameters.put("hookStage", hookStage);
+        parameters.put("incremental", incremental);
+        parameters.put("shardIndex", shardIndex);
+        parameters.put("shardCount", shardCount);
+        parameters.put("resultDirectory", resultDirectory);
+        return parameters;
+    }
+}
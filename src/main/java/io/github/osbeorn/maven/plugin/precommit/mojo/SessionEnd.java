@@ -0,0 +1,177 @@
+package io.github.osbeorn.maven.plugin.precommit.mojo;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs tasks when the Maven session ends, after the last module was built, whether the build failed or not. Only
+ * build extensions can register an {@code AbstractMavenLifecycleParticipant}, so this wraps the execution listener
+ * of the session instead, which Maven looks up for every event. It is kept in the data of the repository session,
+ * like {@link ReactorExecutions}.
+ */
+final class SessionEnd implements ExecutionListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionEnd.class);
+
+    private final ExecutionListener delegate;
+    private final List<Task> tasks = new CopyOnWriteArrayList<>();
+
+    private SessionEnd(ExecutionListener delegate) {
+        this.delegate = delegate;
+    }
+
+    static SessionEnd get(MavenSession session) {
+        return (SessionEnd) session.getRepositorySession().getData().computeIfAbsent(SessionEnd.class, () -> {
+            MavenExecutionRequest request = session.getRequest();
+            SessionEnd sessionEnd = new SessionEnd(request.getExecutionListener());
+            request.setExecutionListener(sessionEnd);
+            return sessionEnd;
+        });
+    }
+
+    /**
+     * Runs {@code task} when the session ends, in the order the tasks were added.
+     */
+    void add(Task task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public void sessionEnded(ExecutionEvent event) {
+        // before the delegate, which logs the result of the build
+        for (Task task : tasks) {
+            try {
+                task.run(event.getSession());
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to finish the pre-commit tasks of the build.", e);
+            }
+        }
+        tasks.clear();
+
+        if (delegate != null) {
+            delegate.sessionEnded(event);
+        }
+    }
+
+    @Override
+    public void projectDiscoveryStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectDiscoveryStarted(event);
+        }
+    }
+
+    @Override
+    public void sessionStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.sessionStarted(event);
+        }
+    }
+
+    @Override
+    public void projectSkipped(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectSkipped(event);
+        }
+    }
+
+    @Override
+    public void projectStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectStarted(event);
+        }
+    }
+
+    @Override
+    public void projectSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectSucceeded(event);
+        }
+    }
+
+    @Override
+    public void projectFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.projectFailed(event);
+        }
+    }
+
+    @Override
+    public void mojoSkipped(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.mojoSkipped(event);
+        }
+    }
+
+    @Override
+    public void mojoStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.mojoStarted(event);
+        }
+    }
+
+    @Override
+    public void mojoSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.mojoSucceeded(event);
+        }
+    }
+
+    @Override
+    public void mojoFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.mojoFailed(event);
+        }
+    }
+
+    @Override
+    public void forkStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkStarted(event);
+        }
+    }
+
+    @Override
+    public void forkSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkSucceeded(event);
+        }
+    }
+
+    @Override
+    public void forkFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkFailed(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectStarted(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectStarted(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectSucceeded(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectSucceeded(event);
+        }
+    }
+
+    @Override
+    public void forkedProjectFailed(ExecutionEvent event) {
+        if (delegate != null) {
+            delegate.forkedProjectFailed(event);
+        }
+    }
+
+    interface Task {
+        void run(MavenSession session);
+    }
+}
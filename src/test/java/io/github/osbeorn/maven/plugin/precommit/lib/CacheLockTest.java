@@ -0,0 +1,174 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Locks taken in this JVM, probed from another JVM, since file locks only exclude other processes.
+ */
+class CacheLockTest {
+    private static final String LOCKED = "locked";
+    private static final String BUSY = "busy";
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.write(temporaryDirectory.resolve("pre-commit-3.5.0.pyz"), new byte[] {1}).toFile();
+    }
+
+    @Test
+    void keepsUseWhenWriteLockIsReleased() throws Exception {
+        try (CacheLock ignored = CacheLock.acquireUse(file)) {
+            CacheLock.acquire(file).close();
+
+            assertEquals(BUSY, probe("evict"));
+        }
+
+        assertEquals(LOCKED, probe("evict"));
+    }
+
+    @Test
+    void keepsWriteLockWhenUseIsReleased() throws Exception {
+        try (CacheLock ignored = CacheLock.acquire(file)) {
+            CacheLock.acquireUse(file).close();
+
+            assertEquals(BUSY, probe("write"));
+        }
+
+        assertEquals(LOCKED, probe("write"));
+    }
+
+    @Test
+    void keepsUseWhenAnotherUseIsReleased() throws Exception {
+        try (CacheLock ignored = CacheLock.acquireUse(file)) {
+            CacheLock.acquireUse(file).close();
+
+            assertEquals(BUSY, probe("evict"));
+            assertEquals(LOCKED, probe("write"));
+        }
+    }
+
+    @Test
+    void doesNotEvictFileUsedByAnotherProcess() throws Exception {
+        Process process = start("use");
+        try {
+            assertEquals(LOCKED, readLine(process));
+
+            assertNull(CacheLock.tryAcquireUnused(file));
+            try (CacheLock lock = CacheLock.tryAcquire(file)) {
+                assertNotNull(lock);
+            }
+        } finally {
+            process.getOutputStream().close();
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        }
+
+        try (CacheLock lock = CacheLock.tryAcquireUnused(file)) {
+            assertNotNull(lock);
+        }
+    }
+
+    @Test
+    void waitsForEvictionInAnotherProcess() throws Exception {
+        Process process = start("evict-and-hold");
+        try {
+            assertEquals(LOCKED, readLine(process));
+            process.getOutputStream().close();
+
+            // the eviction deletes the lock file, so the use is taken on a new one
+            try (CacheLock ignored = CacheLock.acquireUse(file)) {
+                assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+                assertTrue(CacheLock.lockFile(file).exists());
+                assertEquals(BUSY, probe("evict"));
+            }
+        } finally {
+            process.destroy();
+        }
+    }
+
+    private String probe(String mode) throws IOException, InterruptedException {
+        Process process = start(mode);
+        try {
+            return readLine(process);
+        } finally {
+            process.getOutputStream().close();
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        }
+    }
+
+    private Process start(String mode) throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Probe.class.getName(), mode,
+                file.getPath())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    private static String readLine(Process process) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        InputStream in = process.getInputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Takes a lock in another JVM, prints whether it got it, and holds it until its input is closed.
+     */
+    static final class Probe {
+        public static void main(String[] args) throws IOException {
+            File file = new File(args[1]);
+            CacheLock lock;
+            switch (args[0]) {
+                case "use":
+                    lock = CacheLock.acquireUse(file);
+                    break;
+                case "write":
+                    lock = CacheLock.tryAcquire(file);
+                    break;
+                case "evict":
+                    lock = CacheLock.tryAcquireUnused(file);
+                    break;
+                case "evict-and-hold":
+                    lock = CacheLock.tryAcquireUnused(file);
+                    break;
+                default:
+                    throw new IllegalArgumentException(args[0]);
+            }
+
+            System.out.println(lock != null ? LOCKED : BUSY);
+            System.out.flush();
+            while (System.in.read() != -1) {
+                // held until the input is closed
+            }
+            if (lock != null) {
+                if (args[0].equals("evict-and-hold")) {
+                    // as CachePruner does while holding the locks
+                    Files.delete(CacheLock.lockFile(file).toPath());
+                }
+                lock.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultFileDownloaderTest {
+    private static final String PATH = "v3.5.0/pre-commit-3.5.0.pyz";
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private StandInServer server;
+    private byte[] content;
+    private File destination;
+    private File partFile;
+    private File validatorFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StandInServer();
+        content = randomBytes(200_000, 1);
+        server.serve(PATH, content, "\"v1\"");
+
+        destination = temporaryDirectory.resolve("pre-commit-3.5.0.pyz").toFile();
+        partFile = new File(destination.getPath() + DefaultFileDownloader.PART_EXTENSION);
+        validatorFile = new File(destination.getPath() + DefaultFileDownloader.VALIDATOR_EXTENSION);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void downloadsAndVerifies() throws Exception {
+        File copy = temporaryDirectory.resolve("copy/pre-commit-3.5.0.pyz").toFile();
+
+        String sha256 = new DefaultFileDownloader().download(url(), destination.getPath(), sha256(content), copy);
+
+        assertEquals(sha256(content), sha256);
+        assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        assertArrayEquals(content, Files.readAllBytes(copy.toPath()));
+        assertFalse(partFile.exists());
+        assertFalse(validatorFile.exists());
+    }
+
+    @Test
+    void resumesInterruptedDownload() throws Exception {
+        interruptDownload();
+        long downloaded = partFile.length();
+        server.clearRequests();
+
+        String sha256 = new DefaultFileDownloader().download(url(), destination.getPath(), sha256(content));
+
+        assertEquals(sha256(content), sha256);
+        assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        assertEquals(Arrays.asList("GET /" + PATH + " bytes=" + downloaded + "- \"v1\""), server.getRequests());
+        assertFalse(validatorFile.exists());
+    }
+
+    @Test
+    void restartsWhenFileChangedSinceInterruption() throws Exception {
+        interruptDownload();
+        byte[] changed = randomBytes(150_000, 2);
+        server.serve(PATH, changed, "\"v2\"");
+
+        // without a known checksum only If-Range prevents splicing the old part onto the new file
+        String sha256 = new DefaultFileDownloader().download(url(), destination.getPath(), null);
+
+        assertEquals(sha256(changed), sha256);
+        assertArrayEquals(changed, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    void restartsWhenRangeIsNotSatisfiable() throws Exception {
+        Files.write(partFile.toPath(), randomBytes(content.length + 10, 3));
+        Files.write(validatorFile.toPath(), "\"v1\"".getBytes(StandardCharsets.UTF_8));
+
+        String sha256 = new DefaultFileDownloader().download(url(), destination.getPath(), null);
+
+        assertEquals(sha256(content), sha256);
+        List<String> requests = server.getRequests();
+        assertEquals(2, requests.size());
+        assertEquals("GET /" + PATH + " bytes=" + (content.length + 10) + "- \"v1\"", requests.get(0));
+        assertEquals("GET /" + PATH + " null null", requests.get(1));
+    }
+
+    @Test
+    void restartsWhenRangeStartsElsewhere() throws Exception {
+        interruptDownload();
+        server.setMisalignedRanges(true);
+        server.clearRequests();
+
+        String sha256 = new DefaultFileDownloader().download(url(), destination.getPath(), null);
+
+        assertEquals(sha256(content), sha256);
+        assertArrayEquals(content, Files.readAllBytes(destination.toPath()));
+        assertEquals("GET /" + PATH + " null null", server.getRequests().get(1));
+    }
+
+    @Test
+    void restartsPartWithoutValidator() throws Exception {
+        Files.write(partFile.toPath(), randomBytes(1000, 4));
+
+        String sha256 = new DefaultFileDownloader().download(url(), destination.getPath(), null);
+
+        assertEquals(sha256(content), sha256);
+        assertEquals(Arrays.asList("GET /" + PATH + " null null"), server.getRequests());
+    }
+
+    @Test
+    void downloadsInRanges() throws Exception {
+        byte[] large = randomBytes(3 * 1024 * 1024 + 17, 5);
+        server.serve(PATH, large, "\"large\"");
+
+        String sha256 = new DefaultFileDownloader(4).download(url(), destination.getPath(), sha256(large));
+
+        assertEquals(sha256(large), sha256);
+        assertArrayEquals(large, Files.readAllBytes(destination.toPath()));
+        long ranges = server.getRequests().stream()
+                .filter(request -> request.startsWith("GET") && request.endsWith(" \"large\""))
+                .count();
+        assertEquals(3, ranges);
+    }
+
+    @Test
+    void fallsBackToSingleConnectionWhenRangesFail() throws Exception {
+        byte[] large = randomBytes(3 * 1024 * 1024, 6);
+        server.serve(PATH, large, "\"large\"");
+        server.setMisalignedRanges(true);
+
+        String sha256 = new DefaultFileDownloader(4).download(url(), destination.getPath(), sha256(large));
+
+        assertEquals(sha256(large), sha256);
+        assertArrayEquals(large, Files.readAllBytes(destination.toPath()));
+    }
+
+    @Test
+    void rejectsChecksumMismatch() throws Exception {
+        String wrong = sha256(new byte[0]);
+
+        assertThrows(DownloadException.class,
+                () -> new DefaultFileDownloader().download(url(), destination.getPath(), wrong));
+
+        assertFalse(destination.exists());
+        assertFalse(partFile.exists());
+        assertFalse(validatorFile.exists());
+    }
+
+    private void interruptDownload() {
+        server.interruptNextDownloadAfter(content.length / 2);
+        assertThrows(DownloadException.class,
+                () -> new DefaultFileDownloader().download(url(), destination.getPath(), sha256(content)));
+        assertTrue(partFile.length() > 0);
+        assertTrue(validatorFile.isFile());
+        assertFalse(destination.exists());
+    }
+
+    private String url() {
+        return server.getRoot() + PATH;
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) {
+        return Checksums.toHex(Checksums.newSha256().digest(bytes));
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Compares what {@link GitRepository} finds on the file system with what Git reports, in repositories created with
+ * the {@code git} command.
+ */
+class GitRepositoryTest {
+    @TempDir
+    Path temporaryDirectory;
+
+    private File repository;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repository = Files.createDirectories(temporaryDirectory.resolve("repository")).toFile();
+        git(repository, "init");
+        Files.write(repository.toPath().resolve("README.md"), "readme\n".getBytes(StandardCharsets.UTF_8));
+        git(repository, "add", "README.md");
+        git(repository, "commit", "-m", "Initial commit");
+    }
+
+    @Test
+    void findsRepositoryFromSubdirectory() throws IOException {
+        File subdirectory = Files.createDirectories(repository.toPath().resolve("module/src")).toFile();
+
+        GitRepository found = GitRepository.find(subdirectory);
+
+        assertEquals(repository.getCanonicalFile(), found.getWorkTree());
+        assertEquals(gitPath(subdirectory, "--git-dir"), found.getGitDirectory().getCanonicalFile());
+        assertEquals(gitPath(subdirectory, "--git-path", "hooks"), found.getHooksDirectory().getCanonicalFile());
+    }
+
+    @Test
+    void returnsNullOutsideRepository() throws IOException {
+        File directory = Files.createDirectories(temporaryDirectory.resolve("other")).toFile();
+
+        assertNull(GitRepository.find(directory));
+    }
+
+    @Test
+    void findsHooksOfTheMainRepositoryFromWorktree() throws IOException {
+        File worktree = temporaryDirectory.resolve("worktree").toFile();
+        git(repository, "worktree", "add", "-b", "feature", worktree.getPath());
+
+        GitRepository found = GitRepository.find(worktree);
+
+        assertEquals(worktree.getCanonicalFile(), found.getWorkTree());
+        assertEquals(gitPath(worktree, "--git-dir"), found.getGitDirectory().getCanonicalFile());
+        assertEquals(gitPath(worktree, "--git-path", "hooks"), found.getHooksDirectory().getCanonicalFile());
+        assertEquals(new File(repository, ".git/hooks").getCanonicalFile(),
+                found.getHooksDirectory().getCanonicalFile());
+    }
+
+    @Test
+    void findsHooksOfSubmodule() throws IOException {
+        File library = Files.createDirectories(temporaryDirectory.resolve("library")).toFile();
+        git(library, "init");
+        Files.write(library.toPath().resolve("library.txt"), "library\n".getBytes(StandardCharsets.UTF_8));
+        git(library, "add", "library.txt");
+        git(library, "commit", "-m", "Initial commit");
+        git(repository, "submodule", "add", library.getPath(), "library");
+        File submodule = new File(repository, "library");
+
+        GitRepository found = GitRepository.find(submodule);
+
+        assertEquals(submodule.getCanonicalFile(), found.getWorkTree());
+        assertEquals(gitPath(submodule, "--git-dir"), found.getGitDirectory().getCanonicalFile());
+        assertEquals(gitPath(submodule, "--git-path", "hooks"), found.getHooksDirectory().getCanonicalFile());
+        assertEquals(new File(repository, ".git/modules/library/hooks").getCanonicalFile(),
+                found.getHooksDirectory().getCanonicalFile());
+    }
+
+    @Test
+    void resolvesRelativeHooksPathAgainstWorkTree() throws IOException {
+        git(repository, "config", "core.hooksPath", ".githooks");
+        File subdirectory = Files.createDirectories(repository.toPath().resolve("module")).toFile();
+
+        GitRepository found = GitRepository.find(subdirectory);
+
+        assertEquals(".githooks", found.getHooksPath());
+        assertEquals(new File(repository, ".githooks").getCanonicalFile(),
+                found.getHooksDirectory().getCanonicalFile());
+        assertEquals(gitPath(repository, "--git-path", "hooks"), found.getHooksDirectory().getCanonicalFile());
+    }
+
+    @Test
+    void readsQuotedHooksPathWithComment() throws IOException {
+        File hooks = temporaryDirectory.resolve("shared hooks").toFile();
+        Files.write(new File(repository, ".git/config").toPath(),
+                ("[Core]\n\thooksPath = \"" + hooks.getPath() + "\" ; shared\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        GitRepository found = GitRepository.find(repository);
+
+        assertEquals(hooks.getPath(), found.getHooksPath());
+        assertEquals(gitPath(repository, "--git-path", "hooks"), found.getHooksDirectory().getCanonicalFile());
+    }
+
+    @Test
+    void readsHooksPathOfWorktree() throws IOException {
+        File worktree = temporaryDirectory.resolve("worktree").toFile();
+        git(repository, "worktree", "add", "-b", "feature", worktree.getPath());
+        git(worktree, "config", "extensions.worktreeConfig", "true");
+        git(worktree, "config", "--worktree", "core.hooksPath", ".worktree-hooks");
+
+        GitRepository worktreeRepository = GitRepository.find(worktree);
+        GitRepository mainRepository = GitRepository.find(repository);
+
+        assertEquals(".worktree-hooks", worktreeRepository.getHooksPath());
+        assertEquals(gitPath(worktree, "--git-path", "hooks"),
+                worktreeRepository.getHooksDirectory().getCanonicalFile());
+        assertEquals(gitPath(repository, "--git-path", "hooks"), mainRepository.getHooksDirectory().getCanonicalFile());
+    }
+
+    /**
+     * Returns the path {@code git rev-parse} reports, resolved against {@code directory}.
+     */
+    private static File gitPath(File directory, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList("rev-parse"));
+        command.addAll(Arrays.asList(arguments));
+        File path = new File(git(directory, command.toArray(new String[0])));
+        return (path.isAbsolute() ? path : new File(directory, path.getPath())).getCanonicalFile();
+    }
+
+    private static String git(File directory, String... arguments) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList("git",
+                "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false",
+                "-c", "init.defaultBranch=main", "-c", "protocol.file.allow=always"));
+        command.addAll(Arrays.asList(arguments));
+
+        Process process = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        process.getOutputStream().close();
+
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException(command + " failed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running " + command, e);
+        }
+        return output.trim();
+    }
+}
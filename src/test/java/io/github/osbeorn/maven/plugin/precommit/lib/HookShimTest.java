@@ -0,0 +1,151 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hook scripts in {@code hook-scripts/3.5.0} are those pre-commit 3.5.0 writes with
+ * {@code pre-commit install --hook-type <type>}, with {@code --allow-missing-config} for the
+ * {@code -allow-missing-config} variants.
+ */
+class HookShimTest {
+    private static final String VERSION = "3.5.0";
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private File hooksDirectory;
+    private File shimFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        hooksDirectory = Files.createDirectories(temporaryDirectory.resolve("hooks")).toFile();
+        shimFile = temporaryDirectory.resolve(HookShim.FILE_NAME).toFile();
+    }
+
+    @Test
+    void rendersTheScriptItWasCapturedFrom() throws IOException {
+        HookShim shim = capture("pre-commit", hookScript("pre-commit"));
+
+        assertEquals(hookScript("pre-commit"), shim.render("pre-commit"));
+    }
+
+    @Test
+    void rendersTheScriptsOfOtherHookTypes() throws IOException {
+        HookShim shim = capture("pre-commit", hookScript("pre-commit"));
+
+        assertEquals(hookScript("pre-push"), shim.render("pre-push"));
+        assertEquals(hookScript("commit-msg"), shim.render("commit-msg"));
+        assertEquals(hookScript("pre-merge-commit"), shim.render("pre-merge-commit"));
+    }
+
+    @Test
+    void rendersFromHookTypeSharingAPrefix() throws IOException {
+        HookShim shim = capture("pre-merge-commit", hookScript("pre-merge-commit"));
+
+        assertEquals(hookScript("pre-commit"), shim.render("pre-commit"));
+        assertEquals(hookScript("pre-push"), shim.render("pre-push"));
+    }
+
+    @Test
+    void keepsArgumentsAfterTheHookType() throws IOException {
+        HookShim shim = capture("pre-commit", hookScript("pre-commit-allow-missing-config"));
+
+        assertEquals(hookScript("pre-push-allow-missing-config"), shim.render("pre-push"));
+    }
+
+    @Test
+    void doesNotKeepScriptOfAnotherHookType() throws IOException {
+        // pre-commit is a prefix of pre-merge-commit, but not its hook type
+        assertNull(capture("pre-commit", hookScript("pre-merge-commit")));
+        assertNull(capture("pre-merge", hookScript("pre-merge-commit")));
+    }
+
+    @Test
+    void doesNotKeepScriptWithoutTemplatedSection() throws IOException {
+        // in the style of pre-commit 1.x, which passed the hook type outside of a templated section
+        String script = "#!/usr/bin/env bash\n"
+                + "# This is a randomish md5 to identify this script\n"
+                + "# 138fd403232d2ddd5efb44317e38bf03\n"
+                + "\n"
+                + "ENV_PYTHON='/usr/bin/python3'\n"
+                + "HOOK_TYPE=pre-commit\n"
+                + "exec \"$ENV_PYTHON\" -m pre_commit.main hook-impl --hook-type=pre-commit -- \"$@\"\n";
+
+        assertNull(capture("pre-commit", script));
+    }
+
+    @Test
+    void doesNotKeepScriptWithHookTypeOutsideTemplatedSection() throws IOException {
+        String script = hookScript("pre-push").replace("exec pre-commit \"${ARGS[@]}\"",
+                "exec pre-commit \"${ARGS[@]}\" --hook-type=pre-commit ");
+
+        assertNull(capture("pre-commit", script));
+    }
+
+    @Test
+    void removesKeptScriptWhenHookIsMissing() throws IOException {
+        capture("pre-commit", hookScript("pre-commit"));
+
+        HookShim.capture(hooksDirectory, "pre-push", shimFile);
+
+        assertFalse(shimFile.exists());
+        assertNull(HookShim.read(shimFile));
+    }
+
+    @Test
+    void installsScriptAndRemovesLegacyHook() throws IOException {
+        HookShim shim = capture("pre-commit", hookScript("pre-commit"));
+        File legacy = new File(hooksDirectory, "pre-push.legacy");
+        Files.write(legacy.toPath(), "#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(hooksDirectory, "pre-push").toPath(), "#!/bin/sh\n".getBytes(StandardCharsets.UTF_8));
+
+        shim.install(hooksDirectory, "pre-push");
+
+        File hookFile = new File(hooksDirectory, "pre-push");
+        assertEquals(hookScript("pre-push"), new String(Files.readAllBytes(hookFile.toPath()), StandardCharsets.UTF_8));
+        assertTrue(hookFile.canExecute());
+        assertFalse(legacy.exists());
+        assertFalse(new File(hooksDirectory, "pre-push.tmp").exists());
+    }
+
+    /**
+     * Installs {@code script} as the hook for {@code hookType}, keeps it and reads it back.
+     */
+    private HookShim capture(String hookType, String script) throws IOException {
+        Files.write(new File(hooksDirectory, hookType).toPath(), script.getBytes(StandardCharsets.UTF_8));
+        HookShim.capture(hooksDirectory, hookType, shimFile);
+
+        HookShim shim = HookShim.read(shimFile);
+        assertEquals(shim != null, shimFile.exists());
+        if (shim != null) {
+            assertNotNull(shim.render(hookType));
+        }
+        return shim;
+    }
+
+    private static String hookScript(String name) throws IOException {
+        String resource = "/hook-scripts/" + VERSION + "/" + name;
+        try (InputStream in = HookShimTest.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing test resource " + resource);
+            }
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MirrorSelectorTest {
+    private static final String VERSION = "v3.5.0";
+    private static final String PATH = VERSION + "/pre-commit-3.5.0.pyz";
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private StandInServer server;
+    private byte[] content;
+    private File cacheDirectory;
+    private File statisticsFile;
+    private MirrorSelector selector;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StandInServer();
+        content = "pre-commit archive".getBytes(StandardCharsets.UTF_8);
+        server.serve(PATH, content, "\"v1\"");
+
+        cacheDirectory = temporaryDirectory.resolve("cache").toFile();
+        statisticsFile = new File(cacheDirectory, MirrorSelector.FILE_NAME);
+        selector = new MirrorSelector(statisticsFile, new DefaultFileDownloader());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void ordersUnreachableRootsLast() throws IOException {
+        String missing = fileRoot("missing", null);
+
+        List<String> ordered = selector.order(Arrays.asList(missing, server.getRoot()), PATH);
+
+        assertEquals(Arrays.asList(server.getRoot(), missing), ordered);
+        assertEquals("1", statistics().getProperty(missing + ".failures"));
+    }
+
+    @Test
+    void ordersBackedOffRootsLastWithoutProbingThem() throws IOException {
+        String mirror = fileRoot("mirror", content);
+        selector.recordFailure(server.getRoot());
+
+        List<String> ordered = selector.order(Arrays.asList(server.getRoot(), mirror), PATH);
+
+        assertEquals(Arrays.asList(mirror, server.getRoot()), ordered);
+        assertTrue(server.getRequests().isEmpty());
+    }
+
+    @Test
+    void probesRootsAgainAfterSuccess() throws IOException {
+        String mirror = fileRoot("mirror", content);
+        selector.recordFailure(server.getRoot());
+        selector.recordSuccess(server.getRoot());
+
+        selector.order(Arrays.asList(server.getRoot(), mirror), PATH);
+
+        assertEquals(Arrays.asList("HEAD /" + PATH + " null null"), server.getRequests());
+    }
+
+    @Test
+    void averagesLatencyExponentially() {
+        Properties statistics = new Properties();
+
+        MirrorSelector.recordLatency(statistics, "host", 100);
+        assertEquals("100", statistics.getProperty("host.latency"));
+        MirrorSelector.recordLatency(statistics, "host", 200);
+        assertEquals("125", statistics.getProperty("host.latency"));
+        MirrorSelector.recordLatency(statistics, "host", 200);
+        assertEquals("144", statistics.getProperty("host.latency"));
+    }
+
+    @Test
+    void failsOverToTheNextRoot() throws Exception {
+        String mirror = fileRoot("mirror", content);
+        // the stand-in is known to be faster, but serves a damaged archive
+        server.serve(PATH, "damaged archive".getBytes(StandardCharsets.UTF_8), "\"v2\"");
+        server.serve(PATH + ".sha256sum", checksumFile(content), "\"v1\"");
+        Properties statistics = new Properties();
+        statistics.setProperty(MirrorSelector.host(mirror) + ".latency", "10000");
+        writeStatistics(statistics);
+
+        File archive = installer(server.getRoot(), mirror).prefetch();
+
+        assertArrayEquals(content, Files.readAllBytes(archive.toPath()));
+        assertEquals("1", statistics().getProperty(MirrorSelector.host(server.getRoot()) + ".failures"));
+        assertEquals(Arrays.asList(
+                "HEAD /" + PATH + " null null",
+                "GET /" + PATH + ".sha256sum null null",
+                "GET /" + PATH + " null null"), server.getRequests());
+    }
+
+    @Test
+    void doesNotProbeRootsWhenTheArchiveIsCached() throws Exception {
+        String mirror = fileRoot("mirror", content);
+        server.serve(PATH + ".sha256sum", checksumFile(content), "\"v1\"");
+        installer(server.getRoot(), mirror).prefetch();
+        server.clearRequests();
+
+        File archive = installer(server.getRoot(), mirror).prefetch();
+
+        assertArrayEquals(content, Files.readAllBytes(archive.toPath()));
+        assertTrue(server.getRequests().isEmpty());
+    }
+
+    private BinaryInstaller installer(String... roots) {
+        File installDirectory = temporaryDirectory.resolve("install").toFile();
+        InstallConfig config = new DefaultInstallConfig(installDirectory, installDirectory,
+                new DirectoryCacheResolver(cacheDirectory), false, InstallMode.ARCHIVE);
+        return new BinaryInstaller(config, new DefaultFileCopier(), new DefaultFileDownloader(), null,
+                new DigestCache(new File(installDirectory, DigestCache.FILE_NAME)), new Timings())
+                .setVersion(VERSION)
+                .setDownloadRoots(roots);
+    }
+
+    /**
+     * Creates a {@code file:} root, with the archive if {@code archive} is not {@code null}.
+     */
+    private String fileRoot(String name, byte[] archive) throws IOException {
+        Path root = Files.createDirectories(temporaryDirectory.resolve(name));
+        if (archive != null) {
+            Path file = root.resolve(PATH);
+            Files.createDirectories(file.getParent());
+            Files.write(file, archive);
+            Files.write(root.resolve(PATH + ".sha256sum"), checksumFile(archive));
+        }
+        return root.toUri().toString();
+    }
+
+    private Properties statistics() throws IOException {
+        Properties statistics = new Properties();
+        try (InputStream in = new FileInputStream(statisticsFile)) {
+            statistics.load(in);
+        }
+        return statistics;
+    }
+
+    private void writeStatistics(Properties statistics) throws IOException {
+        cacheDirectory.mkdirs();
+        try (OutputStream out = new FileOutputStream(statisticsFile)) {
+            statistics.store(out, null);
+        }
+    }
+
+    private static byte[] checksumFile(byte[] archive) {
+        return (sha256(archive) + "  pre-commit-3.5.0.pyz").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(byte[] bytes) {
+        return Checksums.toHex(Checksums.newSha256().digest(bytes));
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transport.file.FileTransporterFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositoryCacheResolverTest {
+    private static final String VERSION = "v3.5.0";
+    private static final String ARTIFACT_PATH = "io/github/osbeorn/pre-commit/3.5.0/pre-commit-3.5.0.pyz";
+    private static final String DOWNLOAD_PATH = VERSION + "/pre-commit-3.5.0.pyz";
+    private static final CacheDescriptor DESCRIPTOR = new CacheDescriptor("pre-commit", VERSION, "pyz");
+
+    @TempDir
+    Path temporaryDirectory;
+
+    private RepositorySystem repositorySystem;
+    private DefaultRepositorySystemSession session;
+    private Path remoteDirectory;
+    private RemoteRepository remoteRepository;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repositorySystem = newRepositorySystem();
+
+        session = MavenRepositorySystemUtils.newSession();
+        LocalRepository localRepository = new LocalRepository(temporaryDirectory.resolve("local").toFile());
+        session.setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(session, localRepository));
+
+        remoteDirectory = Files.createDirectories(temporaryDirectory.resolve("remote"));
+        remoteRepository = new RemoteRepository.Builder("stand-in", "default", remoteDirectory.toUri().toString())
+                .build();
+        content = "pre-commit archive".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void fetchesArtifactIntoTheLocalRepository() throws IOException {
+        publish(content);
+
+        RepositoryCacheResolver resolver = resolver();
+        File fetched = resolver.fetch(DESCRIPTOR);
+
+        assertEquals(resolver.resolve(DESCRIPTOR).getAbsoluteFile(), fetched.getAbsoluteFile());
+        assertArrayEquals(content, Files.readAllBytes(fetched.toPath()));
+    }
+
+    @Test
+    void returnsNullWhenNoRepositoryHasTheArtifact() {
+        assertNull(resolver().fetch(DESCRIPTOR));
+    }
+
+    @Test
+    void returnsNullWithoutRepositorySystem() throws IOException {
+        publish(content);
+
+        assertNull(new RepositoryCacheResolver(session).fetch(DESCRIPTOR));
+    }
+
+    @Test
+    void returnsNullOffline() throws IOException {
+        publish(content);
+        session.setOffline(true);
+
+        assertNull(resolver().fetch(DESCRIPTOR));
+    }
+
+    @Test
+    void installsFetchedArtifact() throws Exception {
+        publish(content);
+
+        File archive = installer(false, "http://127.0.0.1:1/unused/").prefetch();
+
+        assertArrayEquals(content, Files.readAllBytes(archive.toPath()));
+        assertEquals(sha256(content), Checksums.readSidecar(archive));
+    }
+
+    @Test
+    void downloadsWhenNoRepositoryHasTheArtifact() throws Exception {
+        Path downloadRoot = Files.createDirectories(temporaryDirectory.resolve("download"));
+        Path download = downloadRoot.resolve(DOWNLOAD_PATH);
+        Files.createDirectories(download.getParent());
+        Files.write(download, content);
+        Files.write(downloadRoot.resolve(DOWNLOAD_PATH + ".sha256sum"),
+                sha256(content).getBytes(StandardCharsets.UTF_8));
+
+        File archive = installer(false, downloadRoot.toUri().toString()).prefetch();
+
+        assertEquals(resolver().resolve(DESCRIPTOR).getAbsoluteFile(), archive.getAbsoluteFile());
+        assertArrayEquals(content, Files.readAllBytes(archive.toPath()));
+    }
+
+    @Test
+    void failsOfflineWhenNothingIsCached() throws IOException {
+        publish(content);
+        session.setOffline(true);
+
+        InstallationException e = assertThrows(InstallationException.class,
+                () -> installer(true, "http://127.0.0.1:1/unused/").prefetch());
+        assertTrue(e.getCause().getMessage().contains("offline"), e.getCause().getMessage());
+    }
+
+    /**
+     * Wires the repository system with the service locator, which is deprecated in favor of dependency injection.
+     * Its replacement, {@code maven-resolver-supplier}, would pull in every connector and transport as test
+     * dependencies, where only the file transport is needed.
+     */
+    @SuppressWarnings("deprecation")
+    private static RepositorySystem newRepositorySystem() {
+        // not imported, as Java 8 warns about imports of deprecated classes
+        org.eclipse.aether.impl.DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
+        locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+        locator.addService(TransporterFactory.class, FileTransporterFactory.class);
+        return locator.getService(RepositorySystem.class);
+    }
+
+    private RepositoryCacheResolver resolver() {
+        return new RepositoryCacheResolver(session, repositorySystem, Collections.singletonList(remoteRepository));
+    }
+
+    private BinaryInstaller installer(boolean offline, String downloadRoot) {
+        File installDirectory = temporaryDirectory.resolve("install").toFile();
+        InstallConfig config = new DefaultInstallConfig(installDirectory, installDirectory, resolver(), offline,
+                InstallMode.ARCHIVE);
+        return new BinaryInstaller(config, new DefaultFileCopier(), new DefaultFileDownloader(), null,
+                new DigestCache(new File(installDirectory, DigestCache.FILE_NAME)), new Timings())
+                .setVersion(VERSION)
+                .setDownloadRoot(downloadRoot)
+                .setExpectedSha256(sha256(content));
+    }
+
+    private void publish(byte[] archive) throws IOException {
+        Path file = remoteDirectory.resolve(ARTIFACT_PATH);
+        Files.createDirectories(file.getParent());
+        Files.write(file, archive);
+        Files.write(remoteDirectory.resolve(ARTIFACT_PATH + ".sha1"),
+                Checksums.toHex(sha1(archive)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        return Checksums.toHex(Checksums.newSha256().digest(bytes));
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.osbeorn.maven.plugin.precommit.lib;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A local HTTP server standing in for a download root. It serves files with an {@code ETag}, answers range requests
+ * and {@code If-Range} like a real server, and can be told to misbehave.
+ */
+final class StandInServer implements Closeable {
+    private final HttpServer server;
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+    private final List<String> requests = new ArrayList<>();
+    private volatile long interruptAfter = -1;
+    private volatile boolean misalignedRanges;
+
+    StandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String getRoot() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    void serve(String path, byte[] content, String etag) {
+        resources.put("/" + path, new Resource(content, etag));
+    }
+
+    /**
+     * Closes the connection of the next full download after {@code bytes} bytes.
+     */
+    void interruptNextDownloadAfter(long bytes) {
+        interruptAfter = bytes;
+    }
+
+    /**
+     * Answers range requests with the whole file as partial content starting at byte 0.
+     */
+    void setMisalignedRanges(boolean misalignedRanges) {
+        this.misalignedRanges = misalignedRanges;
+    }
+
+    /**
+     * Returns the requests received so far, as method, path, {@code Range} and {@code If-Range}.
+     */
+    synchronized List<String> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    synchronized void clearRequests() {
+        requests.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            synchronized (this) {
+                requests.add(method + " " + path + " " + range + " " + ifRange);
+            }
+
+            Resource resource = resources.get(path);
+            if (resource == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            byte[] content = resource.content;
+            exchange.getResponseHeaders().set("ETag", resource.etag);
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if ("HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            if (range == null || (ifRange != null && !ifRange.equals(resource.etag))) {
+                long limit = interruptAfter;
+                interruptAfter = -1;
+                exchange.sendResponseHeaders(200, content.length);
+                write(exchange, content, 0, limit < 0 ? content.length : (int) limit);
+                return;
+            }
+
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            int first = Integer.parseInt(bounds[0]);
+            int last = bounds[1].isEmpty() ? content.length - 1 : Math.min(content.length - 1, Integer.parseInt(bounds[1]));
+            if (misalignedRanges) {
+                first = 0;
+                last = content.length - 1;
+            }
+            if (first >= content.length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + first + "-" + last + "/" + content.length);
+            exchange.sendResponseHeaders(206, last - first + 1);
+            write(exchange, content, first, last - first + 1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void write(HttpExchange exchange, byte[] content, int offset, int length) throws IOException {
+        OutputStream out = exchange.getResponseBody();
+        out.write(content, offset, length);
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static final class Resource {
+        private final byte[] content;
+        private final String etag;
+
+        Resource(byte[] content, String etag) {
+            this.content = content;
+            this.etag = etag;
+        }
+    }
+}